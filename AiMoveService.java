@@ -0,0 +1,202 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Answers "what would the AI play here?" for the API. Answers are cached by
+// canonical position (the board folded over its 8 symmetries, plus K and level),
+// so every rotation or mirror image of an opening shares one entry. The cache is
+// an LRU split into segments that lock separately, and concurrent misses on the
+// same position wait for one search instead of each running their own. Easy
+// answers are random on purpose and never cached.
+final class AiMoveService {
+    static final int CACHE_SIZE = Integer.getInteger("tictactoe.ai.cacheSize", 10_000);
+    // Time each uncached query may think, the server's answer to the GUI's budget
+    static final long BUDGET_MILLIS = Long.getLong("tictactoe.api.aiBudgetMillis", 250L);
+
+    private static final int SEGMENTS = 16;
+
+    private static class Holder {
+        static final AiMoveService INSTANCE = new AiMoveService(AiPlayer.shared(), CACHE_SIZE);
+    }
+
+    // A move for one position; `cached` says whether it came from the cache
+    static final class Answer {
+        final GameState board;
+        final char player;
+        final int level;
+        final int move;
+        final boolean cached;
+
+        Answer(GameState board, char player, int level, int move, boolean cached) {
+            this.board = board;
+            this.player = player;
+            this.level = level;
+            this.move = move;
+            this.cached = cached;
+        }
+    }
+
+    private final AiPlayer ai;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final ConcurrentHashMap<String, CompletableFuture<Integer>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+
+    AiMoveService(AiPlayer ai, int capacity) {
+        this.ai = ai;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(Math.max(1, capacity / SEGMENTS));
+        }
+    }
+
+    static AiMoveService shared() {
+        return Holder.INSTANCE;
+    }
+
+    // Thrown instead of starting a time-bounded search the caller has no time left for
+    static final class OutOfTime extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        OutOfTime() {
+            super("No think time left for an uncached search", null, false, false);
+        }
+    }
+
+    // Best move for whoever is to move on `board` ('X', 'O', '-' or ' ' per cell);
+    // `player`, if given, must be them. winLength 0 means the board size's default.
+    Answer bestMove(String board, String player, int level, int winLength) {
+        return bestMove(board, player, level, winLength, true);
+    }
+
+    // As above; without `mayThink`, a miss that needs a time-bounded search (Expert,
+    // or Hard beyond 3x3) throws OutOfTime rather than searching
+    Answer bestMove(String board, String player, int level, int winLength, boolean mayThink) {
+        AiPlayer.checkLevel(level);
+        GameState state = winLength > 0 ? GameState.fromBoardString(board, winLength)
+                : GameState.fromBoardString(board);
+        if (state.isGameOver()) {
+            throw new IllegalStateException("Game is already over");
+        }
+        char toMove = state.toMove();
+        if (player != null && !player.equals(String.valueOf(toMove))) {
+            throw new IllegalArgumentException("It is " + toMove + "'s turn on this board");
+        }
+        if (level == AiPlayer.EASY) {
+            return new Answer(state, toMove, level, search(state, toMove, level), false);
+        }
+
+        int size = state.size();
+        String normalized = state.toBoardString('-');
+        int symmetry = BoardSymmetry.canonicalSymmetry(normalized, size);
+        String key = BoardSymmetry.transform(symmetry, normalized, size) + '/' + state.winLength() + '/' + level;
+
+        Segment segment = segments[(key.hashCode() & 0x7FFFFFFF) % SEGMENTS];
+        Integer canonicalMove = segment.lookup(key);
+        boolean cached = canonicalMove != null;
+        if (cached) {
+            hits.increment();
+        } else {
+            if (!mayThink && (level == AiPlayer.EXPERT || level == AiPlayer.HARD && !state.isClassic())) {
+                throw new OutOfTime();
+            }
+            misses.increment();
+            canonicalMove = searchOnce(key, segment, state, toMove, level, symmetry);
+        }
+        int move = canonicalMove < 0 ? -1 : BoardSymmetry.inverseCell(symmetry, canonicalMove, size);
+        return new Answer(state, toMove, level, move, cached);
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.count();
+        }
+        return size;
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    long evictions() {
+        return evictions.sum();
+    }
+
+    double hitRate() {
+        long h = hits.sum(), total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    // Average time of the searches run for cache misses
+    double averageSearchMillis() {
+        long count = searches.sum();
+        return count == 0 ? 0.0 : searchNanos.sum() / 1e6 / count;
+    }
+
+    // One search per key at a time; anyone else missing on it waits for that one
+    private int searchOnce(String key, Segment segment, GameState state, char toMove, int level, int symmetry) {
+        CompletableFuture<Integer> mine = new CompletableFuture<>();
+        CompletableFuture<Integer> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            return running.join();
+        }
+        try {
+            long start = System.nanoTime();
+            int move = search(state, toMove, level);
+            searchNanos.add(System.nanoTime() - start);
+            searches.increment();
+            int canonical = move < 0 ? -1 : BoardSymmetry.transformCell(symmetry, move, state.size());
+            segment.store(key, canonical);
+            mine.complete(canonical);
+            return canonical;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private int search(GameState state, char toMove, int level) {
+        DeepeningSearch.Control control = new DeepeningSearch.Control(BUDGET_MILLIS, DeepeningSearch.MAX_DEPTH);
+        return ai.bestMove(state, toMove, level, control);
+    }
+
+    private final class Segment {
+        private final LinkedHashMap<String, Integer> entries;
+
+        Segment(int capacity) {
+            this.entries = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized Integer lookup(String key) {
+            return entries.get(key);
+        }
+
+        synchronized void store(String key, int move) {
+            entries.put(key, move);
+        }
+
+        synchronized int count() {
+            return entries.size();
+        }
+    }
+}
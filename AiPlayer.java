@@ -0,0 +1,135 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+// The computer player without the GUI, so the desktop game, the server and
+// headless tools all play the same way. Levels match the difficulty menu.
+// Safe to share between threads. A game's own AiPlayer keeps its Monte Carlo tree
+// between Expert moves; the shared one, used by the server for unrelated positions,
+// gives each Expert request a fresh search so requests run side by side.
+final class AiPlayer {
+    static final int EASY = 1;
+    static final int MEDIUM = 2;
+    static final int HARD = 3;
+    static final int EXPERT = 4;
+
+    private static class Holder {
+        static final AiPlayer INSTANCE = new AiPlayer(false);
+    }
+
+    // Null when every Expert search starts from scratch
+    private final MonteCarloSearch monteCarloSearch;
+
+    // Reuses the Expert search tree between moves of one game
+    AiPlayer() {
+        this(true);
+    }
+
+    private AiPlayer(boolean reuseTree) {
+        this.monteCarloSearch = reuseTree ? new MonteCarloSearch() : null;
+    }
+
+    static AiPlayer shared() {
+        return Holder.INSTANCE;
+    }
+
+    static String levelName(int level) {
+        return level == EASY ? "Easy" : level == MEDIUM ? "Medium" : level == HARD ? "Hard" : "Expert";
+    }
+
+    static void checkLevel(int level) {
+        if (level < EASY || level > EXPERT) {
+            throw new IllegalArgumentException("Level must be " + EASY + "-" + EXPERT + ", not " + level);
+        }
+    }
+
+    // Best cell for `player` on `board`, or -1 if there is none. The board is not
+    // modified; searches that need to play moves work on a copy.
+    int bestMove(GameState board, char player, int level, DeepeningSearch.Control control) {
+        checkLevel(level);
+        // Expert AI - Monte Carlo tree search within the time budget
+        if (level == EXPERT) {
+            MonteCarloSearch search = monteCarloSearch != null ? monteCarloSearch : new MonteCarloSearch();
+            return search.search(board, player, control, MonteCarloSearch.DEFAULT_PLAYOUTS).move;
+        }
+        // Hard AI - Perfect play on 3x3, time-bounded deepening search on bigger boards
+        if (level == HARD) {
+            return board.isClassic() ? SolvedTable.get().bestMove(board, player)
+                    : ParallelSearch.shared().search(board, player, control).move;
+        }
+        // Medium AI - Strategic moves
+        if (level == MEDIUM) {
+            return mediumMove(board, player);
+        }
+        // Easy AI - Random moves with some strategy
+        return easyMove(board, player);
+    }
+
+    private static int mediumMove(GameState board, char player) {
+        // Try to win
+        int cell = board.findWinningCell(player);
+
+        // Block the opponent from winning
+        if (cell < 0) {
+            cell = board.findWinningCell(player == 'X' ? 'O' : 'X');
+        }
+        if (cell >= 0) {
+            return cell;
+        }
+
+        if (board.isClassic()) {
+            // Strategic moves
+            int[][] priorities = {
+                    {1, 1}, // Center
+                    {0, 0}, {0, 2}, {2, 0}, {2, 2}, // Corners
+                    {0, 1}, {1, 0}, {1, 2}, {2, 1}  // Edges
+            };
+
+            for (int[] pos : priorities) {
+                if (board.isEmpty(board.index(pos[0], pos[1]))) {
+                    return board.index(pos[0], pos[1]);
+                }
+            }
+        } else {
+            // Strongest-looking cell next to the existing stones
+            int[] candidates = new int[board.cellCount()];
+            int count = board.candidateMoves(candidates);
+            int bestGain = -1;
+            for (int i = 0; i < count; i++) {
+                int gain = board.moveGain(candidates[i], player);
+                if (gain > bestGain) {
+                    bestGain = gain;
+                    cell = candidates[i];
+                }
+            }
+            if (cell >= 0) {
+                return cell;
+            }
+        }
+
+        return randomMove(board);
+    }
+
+    private static int easyMove(GameState board, char player) {
+        // 30% chance to make a random move
+        if (ThreadLocalRandom.current().nextInt(100) < 30) {
+            return randomMove(board);
+        }
+
+        // Otherwise use medium strategy
+        return mediumMove(board, player);
+    }
+
+    private static int randomMove(GameState board) {
+        int[] emptyCells = new int[board.cellCount()];
+        int count = 0;
+        for (int cell = 0; cell < emptyCells.length; cell++) {
+            if (board.isEmpty(cell)) {
+                emptyCells[count++] = cell;
+            }
+        }
+
+        if (count > 0) {
+            return emptyCells[ThreadLocalRandom.current().nextInt(count)];
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,126 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// POST /api/batch: many moves and best-move queries in one request, for bots and
+// tournament runners. The whole body is parsed before anything runs, so a malformed
+// batch is rejected as a unit; the operations then run in order and each gets its
+// own result (a state, a move, or an error with its HTTP status), streamed back in
+// the same order. Uncached searches in one batch share -Dtictactoe.api.batchThinkMillis
+// (default 2000) of think time; once it is used up, bestMove answers that would need
+// a search get a 503 result instead, so one batch can't hold a request thread for
+// minutes.
+//
+//   {"requests": [{"op": "move", "gameId": "...", "index": 4, "token": "..."},
+//                 {"op": "bestMove", "board": "X---O----", "level": 3}]}
+//   -> {"results": [{...state...}, {"move": 8}]}
+final class ApiBatch {
+    static final int MAX_OPERATIONS = Integer.getInteger("tictactoe.api.maxBatch", 1000);
+    static final long MAX_THINK_MILLIS = Long.getLong("tictactoe.api.batchThinkMillis", 2000L);
+    static final int MAX_BODY_BYTES = 1024 * 1024;
+    private static final String[] REQUEST_FIELDS = {"requests"};
+    private static final String[] OPERATION_FIELDS = {"op", "gameId", "index", "token", "board", "player", "level", "k"};
+
+    private ApiBatch() {
+    }
+
+    private static final class Operation {
+        String op;
+        String gameId;
+        int index = -1;
+        String token;
+        String board;
+        String player;
+        int level = AiPlayer.HARD;
+        int winLength;
+    }
+
+    static void handle(com.sun.net.httpserver.HttpExchange exchange, GameSessionStore sessions) throws IOException {
+        List<Operation> operations = parse(JsonReader.of(exchange.getRequestBody(), MAX_BODY_BYTES));
+
+        try (JsonWriter out = JsonWriter.forResponse(exchange, 200)) {
+            out.beginObject().name("results").beginArray();
+            long thinkDeadline = System.nanoTime() + MAX_THINK_MILLIS * 1_000_000;
+            for (Operation operation : operations) {
+                run(operation, sessions, out, System.nanoTime() < thinkDeadline);
+            }
+            out.endArray().endObject();
+        }
+    }
+
+    private static List<Operation> parse(JsonReader in) {
+        List<Operation> operations = new ArrayList<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.selectName(REQUEST_FIELDS) != 0) {
+                in.skipValue();
+                continue;
+            }
+            in.beginArray();
+            while (in.hasNext()) {
+                if (operations.size() == MAX_OPERATIONS) {
+                    throw new IllegalArgumentException("More than " + MAX_OPERATIONS + " operations in one batch");
+                }
+                operations.add(parseOperation(in));
+            }
+            in.endArray();
+        }
+        in.endObject();
+        in.endDocument();
+        return operations;
+    }
+
+    private static Operation parseOperation(JsonReader in) {
+        Operation operation = new Operation();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.selectName(OPERATION_FIELDS)) {
+                case 0: operation.op = in.nextString(); break;
+                case 1: operation.gameId = in.nextString(); break;
+                case 2: operation.index = in.nextInt(); break;
+                case 3: operation.token = in.nextString(); break;
+                case 4: operation.board = in.nextString(); break;
+                case 5: operation.player = in.nextString(); break;
+                case 6: operation.level = in.nextInt(); break;
+                case 7: operation.winLength = in.nextInt(); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        return operation;
+    }
+
+    private static void run(Operation operation, GameSessionStore sessions, JsonWriter out, boolean mayThink) {
+        try {
+            if ("move".equals(operation.op)) {
+                GameSession session = sessions.get(operation.gameId);
+                if (session == null) {
+                    error(out, 404, "Unknown game");
+                    return;
+                }
+                out.rawValue(sessions.move(session, operation.token, operation.index));
+            } else if ("bestMove".equals(operation.op)) {
+                AiMoveService.Answer answer = AiMoveService.shared().bestMove(operation.board, operation.player,
+                        operation.level, operation.winLength, mayThink);
+                out.beginObject().name("move").value(answer.move).endObject();
+            } else {
+                error(out, 400, "Unknown op: " + operation.op);
+            }
+        } catch (AiMoveService.OutOfTime e) {
+            error(out, 503, "Batch think time used up");
+        } catch (IllegalArgumentException e) {
+            error(out, 400, e.getMessage());
+        } catch (IllegalStateException e) {
+            error(out, 409, e.getMessage());
+        } catch (java.io.UncheckedIOException e) {
+            throw e; // The client has gone
+        } catch (RuntimeException e) {
+            // The response may already be streaming, so this can't fail the whole batch
+            error(out, 500, e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+    }
+
+    private static void error(JsonWriter out, int status, String message) {
+        out.beginObject().name("status").value(status).name("error").value(message).endObject();
+    }
+}
@@ -0,0 +1,399 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+// Microbenchmarks for the engine, AI, JSON codec and persistence paths, in the
+// spirit of JMH without the dependency: time-boxed warm-up and measurement
+// iterations, each benchmark's loop in its own lambda so the JIT compiles it
+// separately, and results fed to a sink so they can't be optimized away. Next to
+// the time per operation it reports what JMH's -prof gc does: bytes allocated per
+// operation (by every thread, so work handed to the DB writer counts too) and
+// the collections that ran during measurement.
+//
+//   java Benchmarks [regex]            e.g. java Benchmarks 'ai\..*'
+//
+// Settings: -Dtictactoe.bench.warmupIterations (3), -Dtictactoe.bench.iterations (5),
+// -Dtictactoe.bench.iterationMillis (1000). The db.* benchmarks run against a stub
+// JDBC driver that does nothing, which isolates the pool and batching overhead;
+// set -Dtictactoe.bench.jdbcUrl (plus .user/.password) to use a real database.
+public class Benchmarks {
+    static final int WARMUP_ITERATIONS = Integer.getInteger("tictactoe.bench.warmupIterations", 3);
+    static final int ITERATIONS = Integer.getInteger("tictactoe.bench.iterations", 5);
+    static final long ITERATION_MILLIS = Long.getLong("tictactoe.bench.iterationMillis", 1000L);
+
+    private static final String STUB_URL = "jdbc:tictactoe-bench:";
+
+    static volatile long sink;
+
+    // Runs the operation `ops` times and returns something derived from the results
+    interface Body {
+        long run(long ops) throws Exception;
+    }
+
+    // Called after each iteration's loop, inside the timed region (e.g. to wait for
+    // background work the operations queued)
+    interface Settle {
+        void await() throws Exception;
+    }
+
+    private static final class Benchmark {
+        final String name;
+        final Body body;
+        final Settle settle;
+
+        Benchmark(String name, Body body, Settle settle) {
+            this.name = name;
+            this.body = body;
+            this.settle = settle;
+        }
+    }
+
+    private static final class Score {
+        double nanosPerOp;
+        double bytesPerOp;
+        long gcCount;
+        long gcMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Pattern filter = Pattern.compile(args.length > 0 ? args[0] : ".*");
+        List<Benchmark> benchmarks = new ArrayList<>();
+        addEngine(benchmarks);
+        addAi(benchmarks);
+        addJson(benchmarks);
+        GameResultWriter writer = addPersistence(benchmarks);
+
+        System.out.printf("%-28s %14s %12s %12s %8s %10s%n", "benchmark", "ns/op", "error", "B/op", "gc", "gc ms");
+        try {
+            for (Benchmark benchmark : benchmarks) {
+                if (filter.matcher(benchmark.name).find()) {
+                    measure(benchmark);
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        System.out.println("(sink " + (sink & 0xFF) + ")");
+    }
+
+    // checkWin and move generation on the incremental bitboard
+    private static void addEngine(List<Benchmark> benchmarks) {
+        GameState classic = GameState.fromBoardString("X-O-X-O--");
+        int[] classicEmpty = emptyCells(classic);
+        add(benchmarks, "engine.checkWin.3x3", ops -> {
+            long found = 0;
+            for (long i = 0; i < ops; i++) {
+                int cell = classicEmpty[(int) (i % classicEmpty.length)];
+                classic.place(cell, 'X');
+                if (classic.hasWinner()) found++;
+                classic.clear(cell);
+            }
+            return found;
+        });
+
+        GameState large = midGame(15, 24);
+        int[] largeEmpty = emptyCells(large);
+        add(benchmarks, "engine.checkWin.15x15", ops -> {
+            long found = 0;
+            for (long i = 0; i < ops; i++) {
+                int cell = largeEmpty[(int) (i % largeEmpty.length)];
+                large.place(cell, large.toMove());
+                if (large.hasWinner()) found++;
+                large.clear(cell);
+            }
+            return found;
+        });
+
+        int[] moves = new int[large.cellCount()];
+        add(benchmarks, "engine.moveGen.15x15", ops -> {
+            long total = 0;
+            for (long i = 0; i < ops; i++) {
+                total += large.candidateMoves(moves);
+            }
+            return total;
+        });
+    }
+
+    private static void addAi(List<Benchmark> benchmarks) {
+        // The minimax table is process-wide, so after the first call these measure
+        // the warm-table path every game after the first one takes
+        GameState empty = new GameState();
+        add(benchmarks, "ai.minimax.empty", ops -> {
+            long total = 0;
+            for (long i = 0; i < ops; i++) {
+                total += MinimaxSearch.bestMove(empty, 'X');
+            }
+            return total;
+        });
+        GameState midGame = GameState.fromBoardString("X---O---X");
+        add(benchmarks, "ai.minimax.midGame", ops -> {
+            long total = 0;
+            for (long i = 0; i < ops; i++) {
+                total += MinimaxSearch.bestMove(midGame, 'O');
+            }
+            return total;
+        });
+        SolvedTable solved = SolvedTable.get();
+        add(benchmarks, "ai.solvedTable.midGame", ops -> {
+            long total = 0;
+            for (long i = 0; i < ops; i++) {
+                total += solved.bestMove(midGame, 'O');
+            }
+            return total;
+        });
+
+        GameState seven = midGame(7, 6);
+        add(benchmarks, "ai.deepening.7x7.depth3", ops -> {
+            long total = 0;
+            for (long i = 0; i < ops; i++) {
+                total += DeepeningSearch.search(seven, seven.toMove(), DeepeningSearch.Control.fixedDepth(3)).move;
+            }
+            return total;
+        });
+    }
+
+    private static void addJson(List<Benchmark> benchmarks) {
+        GameSession session = new GameSession("bench", "Alice", 15, 5);
+        String state = session.stateJson();
+        add(benchmarks, "json.encodeState.15x15", ops -> {
+            long total = 0;
+            for (long i = 0; i < ops; i++) {
+                total += session.stateJson().length();
+            }
+            return total;
+        });
+        session.closeChannel();
+
+        byte[] move = "{\"gameId\":\"4821\",\"index\":42,\"token\":\"2d550c10-ea37-4db1-b67b-c68425723e3a\"}"
+                .getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        String[] fields = {"gameId", "index", "token"};
+        add(benchmarks, "json.parseMove", ops -> {
+            long total = 0;
+            for (long i = 0; i < ops; i++) {
+                JsonReader in = new JsonReader(move);
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.selectName(fields)) {
+                        case 1: total += in.nextInt(); break;
+                        default: total += in.nextString().length();
+                    }
+                }
+                in.endObject();
+            }
+            return total + state.length();
+        });
+    }
+
+    // saveGameResult as the GUI and server call it: queue the result, and count
+    // the time until the background writer has flushed it in batches
+    private static GameResultWriter addPersistence(List<Benchmark> benchmarks) throws Exception {
+        String url = System.getProperty("tictactoe.bench.jdbcUrl");
+        if (url == null) {
+            registerStubDriver();
+            url = STUB_URL;
+        }
+        List<String> connectionInit = url.startsWith("jdbc:sqlite:")
+                ? StorageBackend.SQLITE.connectionInit : Collections.emptyList();
+        ConnectionPool pool = new ConnectionPool(url, System.getProperty("tictactoe.bench.jdbcUser", ""),
+                System.getProperty("tictactoe.bench.jdbcPassword", ""), ConnectionPool.DEFAULT_SIZE, connectionInit);
+        SqlDialect dialect = SqlDialect.MYSQL;
+        try (Connection conn = pool.getConnection()) {
+            if (!url.equals(STUB_URL)) {
+                dialect = SqlDialect.of(conn);
+                GameSchema.createTablesIfNotExist(conn, dialect);
+            }
+        }
+        GameResultWriter writer = new GameResultWriter(pool, dialect, GameResultWriter.DEFAULT_CAPACITY);
+
+        GameResultWriter.GameResult[] results = new GameResultWriter.GameResult[16];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = new GameResultWriter.GameResult("bench-" + (i % 4), "VS AI", "Hard", "X",
+                    i % 3 == 0 ? "Win" : i % 3 == 1 ? "Loss" : "Draw", null, "Computer", "4 0 8 2 6");
+        }
+        long[] submitted = {0};
+        benchmarks.add(new Benchmark("db.saveGameResult", ops -> {
+            for (long i = 0; i < ops; i++) {
+                // Back off instead of dropping when the writer falls behind; parking
+                // rather than spinning leaves the CPU to the writer
+                while (!writer.submit(results[(int) (i & 15)])) {
+                    java.util.concurrent.locks.LockSupport.parkNanos(50_000);
+                }
+            }
+            submitted[0] += ops;
+            return ops;
+        }, () -> {
+            while (writer.processed() < submitted[0]) {
+                java.util.concurrent.locks.LockSupport.parkNanos(50_000);
+            }
+        }));
+        return writer;
+    }
+
+    private static void add(List<Benchmark> benchmarks, String name, Body body) {
+        benchmarks.add(new Benchmark(name, body, () -> { }));
+    }
+
+    private static void measure(Benchmark benchmark) throws Exception {
+        long[] chunk = {1};
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iteration(benchmark, chunk);
+        }
+        Score[] scores = new Score[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            scores[i] = iteration(benchmark, chunk);
+        }
+
+        double mean = 0, bytes = 0;
+        long gcCount = 0, gcMillis = 0;
+        for (Score score : scores) {
+            mean += score.nanosPerOp / scores.length;
+            bytes += score.bytesPerOp / scores.length;
+            gcCount += score.gcCount;
+            gcMillis += score.gcMillis;
+        }
+        double variance = 0;
+        for (Score score : scores) {
+            variance += (score.nanosPerOp - mean) * (score.nanosPerOp - mean);
+        }
+        double deviation = scores.length > 1 ? Math.sqrt(variance / (scores.length - 1)) : 0;
+        System.out.printf("%-28s %14.2f %12s %12.1f %8d %10d%n", benchmark.name, mean,
+                String.format("+- %.2f", deviation), bytes, gcCount, gcMillis);
+    }
+
+    // Runs the body in chunks until ITERATION_MILLIS have passed. Chunks double
+    // until one takes a millisecond, so reading the clock costs next to nothing.
+    private static Score iteration(Benchmark benchmark, long[] chunk) throws Exception {
+        long gcCountBefore = gcCount(), gcMillisBefore = gcMillis();
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long deadline = start + ITERATION_MILLIS * 1_000_000L;
+        long ops = 0;
+        for (long now = start; now < deadline; ) {
+            sink ^= benchmark.body.run(chunk[0]);
+            ops += chunk[0];
+            long after = System.nanoTime();
+            if (after - now < 1_000_000L && chunk[0] < (1L << 40)) {
+                chunk[0] *= 2;
+            }
+            now = after;
+        }
+        benchmark.settle.await();
+        long elapsed = System.nanoTime() - start;
+        long bytes = allocatedBytes() - bytesBefore;
+
+        Score score = new Score();
+        score.nanosPerOp = (double) elapsed / ops;
+        score.bytesPerOp = (double) bytes / ops;
+        score.gcCount = gcCount() - gcCountBefore;
+        score.gcMillis = gcMillis() - gcMillisBefore;
+        return score;
+    }
+
+    // Bytes allocated so far by all live threads
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) total += bytes;
+        }
+        return total;
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    // A board of `size` with `stones` alternating stones spiralling out from the center
+    private static GameState midGame(int size, int stones) {
+        GameState state = new GameState(size, BoardGeometry.defaultWinLength(size));
+        int center = size / 2;
+        int[][] steps = {{0, 1}, {1, 0}, {0, -1}, {-1, 0}};
+        int row = center, col = center, placed = 0, leg = 1, dir = 0;
+        while (placed < stones) {
+            for (int twice = 0; twice < 2 && placed < stones; twice++, dir = (dir + 1) % 4) {
+                for (int i = 0; i < leg && placed < stones; i++) {
+                    int cell = state.index(row, col);
+                    state.place(cell, state.toMove());
+                    placed++;
+                    if (state.hasWinner()) {
+                        state.clear(cell);
+                        placed--;
+                    }
+                    row += steps[dir][0];
+                    col += steps[dir][1];
+                }
+            }
+            leg++;
+        }
+        return state;
+    }
+
+    private static int[] emptyCells(GameState state) {
+        int[] cells = new int[state.cellCount()];
+        int count = 0;
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (state.isEmpty(cell)) cells[count++] = cell;
+        }
+        return java.util.Arrays.copyOf(cells, count);
+    }
+
+    // A JDBC driver whose statements accept everything and return nothing
+    private static void registerStubDriver() throws Exception {
+        ClassLoader loader = Connection.class.getClassLoader();
+        DriverManager.registerDriver((Driver) Proxy.newProxyInstance(loader, new Class<?>[]{Driver.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "acceptsURL": return ((String) args[0]).startsWith(STUB_URL);
+                        case "connect": return ((String) args[0]).startsWith(STUB_URL) ? stub(Connection.class) : null;
+                        case "getMajorVersion": return 1;
+                        case "getMinorVersion": return 0;
+                        default: return defaultValue(method.getReturnType());
+                    }
+                }));
+    }
+
+    private static Object stub(Class<?> type) {
+        ClassLoader loader = Connection.class.getClassLoader();
+        int[] pending = {0};
+        return Proxy.newProxyInstance(loader, new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "prepareStatement": return stub(PreparedStatement.class);
+                case "executeQuery": return stub(ResultSet.class);
+                case "getAutoCommit": case "isValid": return true;
+                case "addBatch": pending[0]++; return null;
+                case "executeBatch": int[] counts = new int[pending[0]]; pending[0] = 0; return counts;
+                case "hashCode": return System.identityHashCode(proxy);
+                case "equals": return proxy == args[0];
+                default: return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return false;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        return null;
+    }
+}
@@ -0,0 +1,116 @@
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Precomputed layout for an N x N board with K-in-a-row: every K-cell window
+// (horizontal, vertical and both diagonals), the windows touching each cell,
+// and Zobrist keys. Instances are immutable and shared by all games of that shape.
+final class BoardGeometry {
+    static final int MIN_SIZE = 3;
+    static final int MAX_SIZE = 15;
+    // Bound on the sum of every window's weight, so GameState's eval stays far below
+    // the search's win scores and a cell's moveGain below its block bonus
+    static final int EVAL_LIMIT = 1 << 22;
+
+    private static final ConcurrentHashMap<Integer, BoardGeometry> CACHE = new ConcurrentHashMap<>();
+
+    // Row/column steps for the four line directions
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    final int size;
+    final int winLength;
+    final int cells;
+    final int windowCount;
+    // windowCells[w * winLength + i] is the i-th cell of window w
+    final int[] windowCells;
+    // cellWindows[cell] lists the windows that contain the cell
+    final int[][] cellWindows;
+    // zobrist[0][cell] for X, zobrist[1][cell] for O
+    final long[][] zobrist;
+    // Window value by stone count for a window the opponent hasn't touched
+    final int[] windowWeight;
+
+    private BoardGeometry(int size, int winLength) {
+        this.size = size;
+        this.winLength = winLength;
+        this.cells = size * size;
+
+        int[] buffer = new int[DIRECTIONS.length * cells * winLength];
+        int count = 0;
+        int[] perCell = new int[cells];
+        for (int[] dir : DIRECTIONS) {
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    int endRow = row + dir[0] * (winLength - 1);
+                    int endCol = col + dir[1] * (winLength - 1);
+                    if (endRow < 0 || endRow >= size || endCol < 0 || endCol >= size) continue;
+
+                    for (int i = 0; i < winLength; i++) {
+                        int cell = (row + dir[0] * i) * size + (col + dir[1] * i);
+                        buffer[count * winLength + i] = cell;
+                        perCell[cell]++;
+                    }
+                    count++;
+                }
+            }
+        }
+        this.windowCount = count;
+        this.windowCells = java.util.Arrays.copyOf(buffer, count * winLength);
+
+        this.cellWindows = new int[cells][];
+        for (int cell = 0; cell < cells; cell++) {
+            cellWindows[cell] = new int[perCell[cell]];
+            perCell[cell] = 0;
+        }
+        for (int w = 0; w < count; w++) {
+            for (int i = 0; i < winLength; i++) {
+                int cell = windowCells[w * winLength + i];
+                cellWindows[cell][perCell[cell]++] = w;
+            }
+        }
+
+        Random random = new Random(0x5EED_0000L + size * 31L + winLength);
+        this.zobrist = new long[2][cells];
+        for (int cell = 0; cell < cells; cell++) {
+            zobrist[0][cell] = random.nextLong();
+            zobrist[1][cell] = random.nextLong();
+        }
+
+        // Each extra stone in an open window is worth 8x more, or less on long lines
+        // where 8x would take the heaviest windows past EVAL_LIMIT
+        int ratio = 8;
+        while (ratio > 2 && power(ratio, winLength - 2) * count > EVAL_LIMIT) {
+            ratio--;
+        }
+        this.windowWeight = new int[winLength + 1];
+        for (int c = 1; c < winLength; c++) {
+            windowWeight[c] = (int) power(ratio, c - 1);
+        }
+    }
+
+    static BoardGeometry of(int size, int winLength) {
+        if (size < MIN_SIZE || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Board size must be between " + MIN_SIZE + " and " + MAX_SIZE);
+        }
+        if (winLength < MIN_SIZE || winLength > size) {
+            throw new IllegalArgumentException("Win length must be between " + MIN_SIZE + " and the board size");
+        }
+        return CACHE.computeIfAbsent(size * 32 + winLength, key -> new BoardGeometry(size, winLength));
+    }
+
+    // Classic sizes need the full row; larger boards play gomoku-style five in a row
+    static int defaultWinLength(int size) {
+        return Math.min(size, 5);
+    }
+
+    private static long power(int base, int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= base;
+        }
+        return result;
+    }
+
+    int window(int w, int i) {
+        return windowCells[w * winLength + i];
+    }
+}
@@ -0,0 +1,141 @@
+// The 8 rotations and reflections of the board, used to fold equivalent positions
+// onto one canonical key. The 3x3 board has precomputed mask tables; other sizes
+// work cell by cell on board strings.
+final class BoardSymmetry {
+    static final int COUNT = 8;
+
+    // CELL_MAP[s][cell] is where `cell` ends up under symmetry s
+    private static final int[][] CELL_MAP = new int[COUNT][GameState.CELLS];
+    private static final int[][] INVERSE_MAP = new int[COUNT][GameState.CELLS];
+    private static final short[][] MASK_MAP = new short[COUNT][1 << GameState.CELLS];
+
+    static {
+        for (int cell = 0; cell < GameState.CELLS; cell++) {
+            int r = cell / 3, c = cell % 3;
+            int[][] targets = {
+                    {r, c},         // identity
+                    {c, 2 - r},     // rotate 90
+                    {2 - r, 2 - c}, // rotate 180
+                    {2 - c, r},     // rotate 270
+                    {r, 2 - c},     // mirror left/right
+                    {2 - r, c},     // mirror top/bottom
+                    {c, r},         // main diagonal
+                    {2 - c, 2 - r}  // anti-diagonal
+            };
+            for (int s = 0; s < COUNT; s++) {
+                int target = GameState.cell(targets[s][0], targets[s][1]);
+                CELL_MAP[s][cell] = target;
+                INVERSE_MAP[s][target] = cell;
+            }
+        }
+
+        for (int s = 0; s < COUNT; s++) {
+            for (int mask = 0; mask < (1 << GameState.CELLS); mask++) {
+                int mapped = 0;
+                for (int cell = 0; cell < GameState.CELLS; cell++) {
+                    if ((mask & (1 << cell)) != 0) {
+                        mapped |= 1 << CELL_MAP[s][cell];
+                    }
+                }
+                MASK_MAP[s][mask] = (short) mapped;
+            }
+        }
+    }
+
+    // INVERSE[s] undoes symmetry s: the two quarter turns swap, the rest undo themselves
+    private static final int[] INVERSE = {0, 3, 2, 1, 4, 5, 6, 7};
+
+    private BoardSymmetry() {
+    }
+
+    static int transform(int symmetry, int mask) {
+        return MASK_MAP[symmetry][mask];
+    }
+
+    static int transformCell(int symmetry, int cell) {
+        return CELL_MAP[symmetry][cell];
+    }
+
+    static int inverseCell(int symmetry, int cell) {
+        return INVERSE_MAP[symmetry][cell];
+    }
+
+    // Packs both masks into an 18-bit key (first | second << 9)
+    static int key(int first, int second) {
+        return first | (second << GameState.CELLS);
+    }
+
+    // Smallest key over all 8 symmetries, so equivalent positions share one key
+    static int canonicalKey(int first, int second) {
+        int best = Integer.MAX_VALUE;
+        for (int s = 0; s < COUNT; s++) {
+            int key = MASK_MAP[s][first] | (MASK_MAP[s][second] << GameState.CELLS);
+            if (key < best) {
+                best = key;
+            }
+        }
+        return best;
+    }
+
+    // The symmetry that maps the position onto its canonical key
+    static int canonicalSymmetry(int first, int second) {
+        int best = Integer.MAX_VALUE;
+        int bestSymmetry = 0;
+        for (int s = 0; s < COUNT; s++) {
+            int key = MASK_MAP[s][first] | (MASK_MAP[s][second] << GameState.CELLS);
+            if (key < best) {
+                best = key;
+                bestSymmetry = s;
+            }
+        }
+        return bestSymmetry;
+    }
+
+    // Where `cell` ends up under symmetry s on a size x size board
+    static int transformCell(int symmetry, int cell, int size) {
+        int r = cell / size, c = cell % size, last = size - 1;
+        switch (symmetry) {
+            case 0: return cell;                          // identity
+            case 1: return c * size + (last - r);         // rotate 90
+            case 2: return (last - r) * size + (last - c); // rotate 180
+            case 3: return (last - c) * size + r;         // rotate 270
+            case 4: return r * size + (last - c);         // mirror left/right
+            case 5: return (last - r) * size + c;         // mirror top/bottom
+            case 6: return c * size + r;                  // main diagonal
+            default: return (last - c) * size + (last - r); // anti-diagonal
+        }
+    }
+
+    static int inverseCell(int symmetry, int cell, int size) {
+        return transformCell(INVERSE[symmetry], cell, size);
+    }
+
+    static String transform(int symmetry, String board, int size) {
+        char[] out = new char[board.length()];
+        for (int cell = 0; cell < out.length; cell++) {
+            out[transformCell(symmetry, cell, size)] = board.charAt(cell);
+        }
+        return new String(out);
+    }
+
+    // The symmetry that maps a board string onto its smallest image
+    static int canonicalSymmetry(String board, int size) {
+        int bestSymmetry = 0;
+        for (int s = 1; s < COUNT; s++) {
+            if (compare(board, size, s, bestSymmetry) < 0) {
+                bestSymmetry = s;
+            }
+        }
+        return bestSymmetry;
+    }
+
+    // Compares the images of `board` under two symmetries without building them
+    private static int compare(String board, int size, int first, int second) {
+        for (int cell = 0; cell < board.length(); cell++) {
+            char a = board.charAt(inverseCell(first, cell, size));
+            char b = board.charAt(inverseCell(second, cell, size));
+            if (a != b) return a - b;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,374 @@
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+// Small JDBC connection pool. Connections are opened lazily up to maxSize; a caller
+// that finds them all busy waits up to the checkout timeout. Connections handed out
+// are proxies: close() gives the physical connection back to the pool, and
+// prepareStatement(sql) reuses a statement cached on that connection, whose close()
+// only clears its parameters. Statements in connectionInit (SQLite's PRAGMAs, say)
+// run once on each physical connection as it is opened.
+final class ConnectionPool implements DataSource, AutoCloseable {
+    static final int DEFAULT_SIZE = Integer.getInteger("tictactoe.db.poolSize", 8);
+    static final long CHECKOUT_TIMEOUT_MILLIS = Long.getLong("tictactoe.db.checkoutTimeoutMillis", 5000L);
+    private static final int STATEMENT_CACHE_SIZE = 32;
+    // Connections idle for longer than this are checked with isValid() before reuse
+    private static final long VALIDATE_AFTER_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final List<String> connectionInit;
+    private final BlockingQueue<PhysicalConnection> idle;
+    private final AtomicInteger opened = new AtomicInteger();
+    private volatile boolean closed;
+    private volatile int loginTimeout;
+
+    ConnectionPool(String url, String user, String password, int maxSize) {
+        this(url, user, password, maxSize, Collections.emptyList());
+    }
+
+    ConnectionPool(String url, String user, String password, int maxSize, List<String> connectionInit) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1: " + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.connectionInit = connectionInit;
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        while (true) {
+            if (closed) {
+                throw new SQLException("Connection pool is closed");
+            }
+            PhysicalConnection physical = idle.poll();
+            if (physical == null) {
+                physical = openOrWait();
+            } else if (System.nanoTime() - physical.lastUsedNanos > VALIDATE_AFTER_NANOS
+                    && !physical.connection.isValid(1)) {
+                discard(physical);
+                continue;
+            }
+            return physical.lease();
+        }
+    }
+
+    private PhysicalConnection openOrWait() throws SQLException {
+        while (true) {
+            int count = opened.get();
+            if (count < maxSize) {
+                if (opened.compareAndSet(count, count + 1)) {
+                    try {
+                        return new PhysicalConnection(open());
+                    } catch (SQLException | RuntimeException e) {
+                        opened.decrementAndGet();
+                        throw e;
+                    }
+                }
+                continue;
+            }
+            try {
+                PhysicalConnection physical = idle.poll(CHECKOUT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (physical == null) {
+                    throw new SQLTransientConnectionException(
+                            "No database connection free after " + CHECKOUT_TIMEOUT_MILLIS + " ms");
+                }
+                return physical;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection", e);
+            }
+        }
+    }
+
+    private Connection open() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, user, password);
+        if (connectionInit.isEmpty()) {
+            return connection;
+        }
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : connectionInit) {
+                statement.execute(sql);
+            }
+        } catch (SQLException | RuntimeException e) {
+            try {
+                connection.close();
+            } catch (SQLException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        return connection;
+    }
+
+    private void release(PhysicalConnection physical) {
+        if (!closed && !physical.broken) {
+            try {
+                if (!physical.connection.getAutoCommit()) {
+                    physical.connection.rollback();
+                    physical.connection.setAutoCommit(true);
+                }
+                physical.lastUsedNanos = System.nanoTime();
+                if (idle.offer(physical)) {
+                    return;
+                }
+            } catch (SQLException e) {
+                // Fall through and drop it
+            }
+        }
+        discard(physical);
+    }
+
+    private void discard(PhysicalConnection physical) {
+        opened.decrementAndGet();
+        physical.close();
+    }
+
+    int openConnections() {
+        return opened.get();
+    }
+
+    int idleConnections() {
+        return idle.size();
+    }
+
+    int maxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        PhysicalConnection physical;
+        while ((physical = idle.poll()) != null) {
+            discard(physical);
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections all use the configured account");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return DriverManager.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        DriverManager.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        loginTimeout = seconds;
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return loginTimeout;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    // SQLState class 08 means the connection itself is gone
+    private static boolean isConnectionFailure(Throwable t) {
+        return t instanceof SQLException && ((SQLException) t).getSQLState() != null
+                && ((SQLException) t).getSQLState().startsWith("08");
+    }
+
+    private static Object forward(Object target, Method method, Object[] args,
+                                  PhysicalConnection physical) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (isConnectionFailure(cause)) {
+                physical.broken = true;
+            }
+            throw cause;
+        }
+    }
+
+    private final class PhysicalConnection {
+        final Connection connection;
+        volatile long lastUsedNanos = System.nanoTime();
+        volatile boolean broken;
+
+        // Least recently used statement is closed once the cache is full
+        private final Map<String, PreparedStatement> statements =
+                new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                        if (size() <= STATEMENT_CACHE_SIZE) {
+                            return false;
+                        }
+                        closeQuietly(eldest.getValue());
+                        return true;
+                    }
+                };
+
+        PhysicalConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Lease(this));
+        }
+
+        // Only one lease holds a connection at a time, so the cache needs no locking
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null || statement.isClosed()) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            }
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, new CachedStatement(statement, this));
+        }
+
+        void close() {
+            for (PreparedStatement statement : statements.values()) {
+                closeQuietly(statement);
+            }
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // Already unusable
+            }
+        }
+
+        private void closeQuietly(PreparedStatement statement) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                // Already unusable
+            }
+        }
+    }
+
+    // The caller's view of a pooled connection; unusable once closed
+    private final class Lease implements InvocationHandler {
+        private PhysicalConnection physical;
+
+        Lease(PhysicalConnection physical) {
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (physical != null) {
+                        PhysicalConnection returned = physical;
+                        physical = null;
+                        release(returned);
+                    }
+                    return null;
+                case "isClosed":
+                    return physical == null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + (physical == null ? "(returned)" : physical.connection.toString());
+                default:
+                    break;
+            }
+            if (physical == null) {
+                throw new SQLException("Connection has been returned to the pool");
+            }
+            if (method.getName().equals("prepareStatement") && args.length == 1) {
+                return physical.prepare((String) args[0]);
+            }
+            return forward(physical.connection, method, args, physical);
+        }
+    }
+
+    // A cached statement; close() resets it for the next caller instead of closing it
+    private static final class CachedStatement implements InvocationHandler {
+        private final PreparedStatement statement;
+        private final PhysicalConnection physical;
+        private boolean closed;
+
+        CachedStatement(PreparedStatement statement, PhysicalConnection physical) {
+            this.statement = statement;
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        ResultSet open = statement.getResultSet();
+                        if (open != null) {
+                            open.close();
+                        }
+                        statement.clearParameters();
+                        statement.clearBatch();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+            return forward(statement, method, args, physical);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Time-bounded AI for N x N boards: iterative-deepening alpha-beta over GameState,
+// using the incremental threat counts for forced moves and the open-window
+// evaluation at the horizon. Each completed depth refines the answer, so the
+// search can stop at any point and still return the best move found so far.
+// Results are cached in a TranspositionTable; when a ParallelSearch is attached,
+// deep nodes hand their younger siblings to the fork/join pool.
+final class DeepeningSearch {
+    static final long DEFAULT_BUDGET_MILLIS = Long.getLong("tictactoe.ai.budgetMillis", 1000L);
+    static final int WIN_SCORE = 1_000_000_000;
+    static final int MAX_DEPTH = 64;
+    // Mixed into the position hash so the same stones with a different side to move don't collide
+    private static final long O_TO_MOVE = 0x9E3779B97F4A7C15L;
+
+    static final class Result {
+        final int move;
+        final int score;
+        final int depth;
+        final long nodes;
+        final long elapsedNanos;
+
+        Result(int move, int score, int depth, long nodes, long elapsedNanos) {
+            this.move = move;
+            this.score = score;
+            this.depth = depth;
+            this.nodes = nodes;
+            this.elapsedNanos = elapsedNanos;
+        }
+    }
+
+    // Limits shared by every worker of one search
+    static final class Control {
+        final long startNanos = System.nanoTime();
+        final long budgetNanos;
+        final int maxDepth;
+        final LongAdder nodes = new LongAdder();
+        private volatile boolean cancelled;
+
+        Control(long budgetMillis, int maxDepth) {
+            this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+            this.maxDepth = Math.min(maxDepth, MAX_DEPTH);
+        }
+
+        // No time limit, stops after `depth` plies
+        static Control fixedDepth(int depth) {
+            return new Control(Long.MAX_VALUE, depth);
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+
+        boolean isStopped() {
+            return cancelled || System.nanoTime() - startNanos > budgetNanos;
+        }
+
+        long nodes() {
+            return nodes.sum();
+        }
+    }
+
+    // Thrown to unwind the search once the deadline passes or it is cancelled
+    static final class TimeUp extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        TimeUp() {
+            super(null, null, false, false);
+        }
+    }
+
+    final GameState state;
+    private final Control control;
+    private final TranspositionTable table;
+    private final ParallelSearch splitter;
+    private final int[][] moveBuffers = new int[MAX_DEPTH + 2][];
+    private final int[][] gainBuffers = new int[MAX_DEPTH + 2][];
+    private int pendingNodes;
+
+    DeepeningSearch(GameState state, Control control, TranspositionTable table, ParallelSearch splitter) {
+        this.state = state;
+        this.control = control;
+        this.table = table;
+        this.splitter = splitter;
+    }
+
+    static Result search(GameState state, char player, long budgetMillis) {
+        return search(state, player, new Control(budgetMillis, MAX_DEPTH));
+    }
+
+    static Result search(GameState state, char player, Control control) {
+        return new DeepeningSearch(state.copy(), control, TranspositionTable.SHARED, null).run(player);
+    }
+
+    // Same search on a copy of the position, for a sibling task
+    DeepeningSearch fork() {
+        return new DeepeningSearch(state.copy(), control, table, splitter);
+    }
+
+    Result run(char player) {
+        long start = System.nanoTime();
+        int[] rootMoves = moves(0);
+        int rootCount = orderedMoves(player, 0, -1);
+        if (rootCount == 0) {
+            return new Result(-1, 0, 0, 0, System.nanoTime() - start);
+        }
+
+        int bestMove = rootMoves[0];
+        int bestScore = 0;
+        int completedDepth = 0;
+        int maxDepth = Math.min(control.maxDepth, state.cellCount() - state.moveCount());
+        try {
+            for (int depth = 1; depth <= maxDepth; depth++) {
+                int alpha = -WIN_SCORE - 1;
+                int iterationBest = -1;
+                for (int i = 0; i < rootCount; i++) {
+                    int score = searchMove(rootMoves[i], player, depth, 0, alpha, WIN_SCORE + 1);
+                    if (score > alpha) {
+                        alpha = score;
+                        iterationBest = i;
+                    }
+                }
+
+                moveToFront(rootMoves, iterationBest);
+                bestMove = rootMoves[0];
+                bestScore = alpha;
+                completedDepth = depth;
+
+                if (isDecisive(alpha)) {
+                    break; // Forced result found, deeper search can't change it
+                }
+            }
+        } catch (TimeUp e) {
+            // Keep the result of the last completed depth
+        }
+        flushNodes();
+        return new Result(bestMove, bestScore, completedDepth, control.nodes(), System.nanoTime() - start);
+    }
+
+    // Score of playing `cell` for `player` at `ply`, searched `depth` plies deep
+    int searchMove(int cell, char player, int depth, int ply, int alpha, int beta) {
+        state.place(cell, player);
+        try {
+            return -negamax(opponent(player), depth - 1, ply + 1, -beta, -alpha);
+        } finally {
+            state.clear(cell);
+        }
+    }
+
+    // Candidate moves at the root, best-looking first
+    int rootMoves(char player, int[] out) {
+        int count = orderedMoves(player, 0, -1);
+        System.arraycopy(moves(0), 0, out, 0, count);
+        return count;
+    }
+
+    void flushNodes() {
+        control.nodes.add(pendingNodes);
+        pendingNodes = 0;
+    }
+
+    private int negamax(char player, int depth, int ply, int alpha, int beta) {
+        if (++pendingNodes >= 256) {
+            flushNodes();
+            if (control.isStopped()) {
+                throw new TimeUp();
+            }
+        }
+        if (state.hasWinner()) {
+            return -(WIN_SCORE - ply); // The previous move won
+        }
+        if (state.isFull()) {
+            return 0;
+        }
+        if (state.findWinningCell(player) >= 0) {
+            return WIN_SCORE - ply - 1;
+        }
+        if (depth <= 0) {
+            return state.evaluate(player);
+        }
+
+        long hash = player == 'O' ? state.hash() ^ O_TO_MOVE : state.hash();
+        long entry = table.probe(hash);
+        int hashMove = -1;
+        if (entry != 0) {
+            hashMove = TranspositionTable.move(entry);
+            if (TranspositionTable.depth(entry) >= depth) {
+                int stored = fromTable(TranspositionTable.score(entry), ply);
+                int flag = TranspositionTable.flag(entry);
+                if (flag == TranspositionTable.EXACT) {
+                    return stored;
+                } else if (flag == TranspositionTable.LOWER_BOUND) {
+                    alpha = Math.max(alpha, stored);
+                } else {
+                    beta = Math.min(beta, stored);
+                }
+                if (alpha >= beta) {
+                    return stored;
+                }
+            }
+        }
+
+        int alphaOrig = alpha;
+        int[] moves = moves(ply);
+        int count = orderedMoves(player, ply, hashMove);
+        int best = -WIN_SCORE - 1;
+        int bestMove = -1;
+        for (int i = 0; i < count; i++) {
+            if (i == 1 && splitter != null && splitter.shouldSplit(depth, count)) {
+                // Young brothers wait: the eldest child set the bound, the rest run in parallel
+                int[] split = splitter.searchSiblings(this, player, moves, 1, count, depth, ply, alpha, beta);
+                if (split[0] > best) {
+                    best = split[0];
+                    bestMove = split[1];
+                }
+                break;
+            }
+
+            int score = searchMove(moves[i], player, depth, ply, alpha, beta);
+            if (score > best) {
+                best = score;
+                bestMove = moves[i];
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        int flag = best <= alphaOrig ? TranspositionTable.UPPER_BOUND
+                : best >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+        table.store(hash, bestMove, depth, flag, toTable(best, ply));
+        return best;
+    }
+
+    // Fills moves(ply) with candidate moves, best-looking first. When either side
+    // can win on the spot, only that cell is worth trying.
+    private int orderedMoves(char player, int ply, int hashMove) {
+        int[] moves = moves(ply);
+        int win = state.findWinningCell(player);
+        if (win >= 0) {
+            moves[0] = win;
+            return 1;
+        }
+        int block = state.findWinningCell(opponent(player));
+        if (block >= 0) {
+            moves[0] = block;
+            return 1;
+        }
+
+        int count = state.candidateMoves(moves);
+        int[] gains = gains(ply);
+        for (int i = 0; i < count; i++) {
+            int cell = moves[i];
+            int gain = cell == hashMove ? Integer.MAX_VALUE : state.moveGain(cell, player);
+            int j = i;
+            while (j > 0 && gains[j - 1] < gain) {
+                moves[j] = moves[j - 1];
+                gains[j] = gains[j - 1];
+                j--;
+            }
+            moves[j] = cell;
+            gains[j] = gain;
+        }
+        return count;
+    }
+
+    private int[] moves(int ply) {
+        if (moveBuffers[ply] == null) {
+            moveBuffers[ply] = new int[state.cellCount()];
+        }
+        return moveBuffers[ply];
+    }
+
+    private int[] gains(int ply) {
+        if (gainBuffers[ply] == null) {
+            gainBuffers[ply] = new int[state.cellCount()];
+        }
+        return gainBuffers[ply];
+    }
+
+    // Win scores depend on the ply they were found at; the table stores them
+    // relative to the node instead so they stay valid from any root
+    private static int toTable(int score, int ply) {
+        if (score > WIN_SCORE - MAX_DEPTH * 2) return score + ply;
+        if (score < -WIN_SCORE + MAX_DEPTH * 2) return score - ply;
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score > WIN_SCORE - MAX_DEPTH * 2) return score - ply;
+        if (score < -WIN_SCORE + MAX_DEPTH * 2) return score + ply;
+        return score;
+    }
+
+    static boolean isDecisive(int score) {
+        return Math.abs(score) >= WIN_SCORE - MAX_DEPTH * 2;
+    }
+
+    static void moveToFront(int[] moves, int index) {
+        int best = moves[index];
+        System.arraycopy(moves, 0, moves, 1, index);
+        moves[0] = best;
+    }
+
+    static char opponent(char player) {
+        return player == 'X' ? 'O' : 'X';
+    }
+}
@@ -0,0 +1,243 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Pushes a game's events to everyone watching it over Server-Sent Events
+// (GET /api/events/{id}). Each publish is queued for every open stream, and the
+// latest state is replayed to anyone who subscribes later, so clients never have to
+// poll. Publishing never touches a socket: each stream has its own queue of up to
+// -Dtictactoe.events.queueFrames frames (default 64), written out by a pooled writer
+// thread. A stream that falls that far behind, or fails a write, is dropped, so a
+// stalled client can't hold up the game or the matchmaker.
+final class GameChannel {
+    static final long HEARTBEAT_SECONDS = Long.getLong("tictactoe.events.heartbeatSeconds", 15L);
+    static final int QUEUE_FRAMES = Integer.getInteger("tictactoe.events.queueFrames", 64);
+
+    private static final ConcurrentHashMap<String, GameChannel> CHANNELS = new ConcurrentHashMap<>();
+
+    // Comment frames keep idle streams open through proxies and find dead clients
+    private static final ScheduledExecutorService HEARTBEAT = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "event-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Writes queued frames out; a thread only blocks on the socket of the stream it is draining
+    private static final ExecutorService WRITERS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "event-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        HEARTBEAT.scheduleAtFixedRate(() -> {
+            for (GameChannel channel : CHANNELS.values()) {
+                channel.send(": ping\n\n");
+            }
+        }, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private final String gameId;
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private volatile String lastState;
+    private long lastVersion = -1; // Of the state published through publishState
+    private boolean closed; // Guarded by this
+
+    private GameChannel(String gameId) {
+        this.gameId = gameId;
+    }
+
+    static GameChannel open(String gameId) {
+        return CHANNELS.computeIfAbsent(gameId, GameChannel::new);
+    }
+
+    // The channel for `gameId`, or null if there is none
+    static GameChannel find(String gameId) {
+        return CHANNELS.get(gameId);
+    }
+
+    String gameId() {
+        return gameId;
+    }
+
+    // Latest "state" event data, or null before the first one
+    String lastState() {
+        return lastState;
+    }
+
+    int subscriberCount() {
+        return subscribers.size();
+    }
+
+    // Sends an event to every subscriber; "state" events are also kept for replay.
+    // Never blocks on a client.
+    synchronized void publish(String event, String data) {
+        if (event.equals("state")) {
+            lastState = data;
+        }
+        send(frame(event, data));
+    }
+
+    // Publishes a "state" event unless one with a later version has already gone
+    // out, for publishers that build the state under their own lock but publish
+    // after releasing it
+    synchronized void publishState(long version, String data) {
+        if (version <= lastVersion) {
+            return;
+        }
+        lastVersion = version;
+        publish("state", data);
+    }
+
+    // Takes over the exchange as an event stream. The handler thread returns right
+    // away; the stream stays open until the client leaves or the channel closes.
+    void subscribe(com.sun.net.httpserver.HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+
+        // Under the publish lock, so the replayed state is queued before any newer event
+        Subscriber subscriber = new Subscriber(exchange);
+        synchronized (this) {
+            String state = lastState;
+            if (!subscriber.offer(state == null ? ": subscribed\n\n" : frame("state", state))) {
+                return;
+            }
+            if (closed) {
+                // Found just before the channel closed: the final state, then the end
+                subscriber.offer(endFrame());
+                subscriber.finish();
+                return;
+            }
+            subscribers.add(subscriber);
+        }
+    }
+
+    // Ends every game's stream, e.g. when the server stops
+    static void closeAll() {
+        for (GameChannel channel : CHANNELS.values()) {
+            channel.close();
+        }
+    }
+
+    // Sends a final "end" event, closes every stream once it has been written out and
+    // forgets the channel
+    synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        CHANNELS.remove(gameId, this);
+        send(endFrame());
+        for (Subscriber subscriber : subscribers) {
+            subscriber.finish();
+        }
+        subscribers.clear();
+    }
+
+    private synchronized void send(String frame) {
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.offer(frame)) {
+                subscribers.remove(subscriber);
+            }
+        }
+    }
+
+    private String endFrame() {
+        return frame("end", JsonWriter.toString(w -> w.beginObject().name("gameId").value(gameId).endObject()));
+    }
+
+    private static String frame(String event, String data) {
+        return "event: " + event + "\ndata: " + data + "\n\n";
+    }
+
+    private static final class Subscriber {
+        private final com.sun.net.httpserver.HttpExchange exchange;
+        private final OutputStream out;
+        private final BlockingQueue<String> frames = new ArrayBlockingQueue<>(QUEUE_FRAMES);
+        // Whether a writer is draining `frames`; at most one at a time
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean finishing;
+
+        Subscriber(com.sun.net.httpserver.HttpExchange exchange) {
+            this.exchange = exchange;
+            this.out = exchange.getResponseBody();
+        }
+
+        // Queues a frame; false once the client has gone away or fallen too far behind
+        boolean offer(String frame) {
+            if (closed.get() || finishing) {
+                return false;
+            }
+            if (!frames.offer(frame)) {
+                close();
+                return false;
+            }
+            startDraining();
+            return true;
+        }
+
+        // Closes the stream after the frames already queued
+        void finish() {
+            finishing = true;
+            startDraining();
+        }
+
+        private void startDraining() {
+            if (draining.compareAndSet(false, true)) {
+                WRITERS.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                String frame;
+                while ((frame = frames.poll()) != null) {
+                    if (!write(frame)) {
+                        return;
+                    }
+                }
+                if (finishing) {
+                    close();
+                    return;
+                }
+                draining.set(false);
+                // A frame or finish() that arrived after the poll, but before the flag
+                // was cleared, saw a writer still running and is left for this one
+                if (frames.isEmpty() && !finishing || !draining.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+
+        private boolean write(String frame) {
+            try {
+                out.write(frame.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                return true;
+            } catch (IOException e) {
+                close();
+                return false;
+            }
+        }
+
+        // Closing may block on the socket too, so it never runs on the caller's thread
+        private void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            frames.clear();
+            WRITERS.execute(exchange::close);
+        }
+    }
+}
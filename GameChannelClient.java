@@ -0,0 +1,189 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+// Desktop side of online play. Follows one game's event stream on a daemon thread,
+// reconnecting if it drops, and hands every event to the listener on the EDT.
+// Requests to the game server are asynchronous so the UI never waits on the network.
+final class GameChannelClient implements AutoCloseable {
+    static final String DEFAULT_SERVER = System.getProperty("tictactoe.server.url", "http://localhost:8080");
+    private static final long RECONNECT_MILLIS = 1000;
+
+    private static final HttpClient HTTP = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    interface Listener {
+        void onEvent(String event, String data);
+    }
+
+    private final String server;
+    private final String gameId;
+    private final String token;
+    private final Listener listener;
+    private final Thread reader;
+    private volatile InputStream stream;
+    private volatile boolean closed; // by us
+    private volatile boolean ended;  // by the server
+
+    // `token` is the seat token the server handed out on create or join
+    GameChannelClient(String server, String gameId, String token, Listener listener) {
+        this.server = server;
+        this.gameId = gameId;
+        this.token = token;
+        this.listener = listener;
+        this.reader = new Thread(this::follow, "game-events-" + gameId);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    String gameId() {
+        return gameId;
+    }
+
+    // GET `path` on the game server; completes with the body, or exceptionally with
+    // the server's error message when the status isn't 200
+    static CompletableFuture<String> get(String server, String path) {
+        return send(HttpRequest.newBuilder(URI.create(server + path)).GET());
+    }
+
+    static CompletableFuture<String> post(String server, String path, String json) {
+        return send(HttpRequest.newBuilder(URI.create(server + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)));
+    }
+
+    CompletableFuture<String> sendMove(int index) {
+        return post(server, "/api/move", JsonWriter.toString(w -> w.beginObject()
+                .name("gameId").value(gameId)
+                .name("index").value(index)
+                .name("token").value(token)
+                .endObject()));
+    }
+
+    static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    // Unwraps the cause of a failed request for display
+    static String errorMessage(Throwable t) {
+        Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+        return cause.getMessage() != null ? cause.getMessage() : cause.toString();
+    }
+
+    private static CompletableFuture<String> send(HttpRequest.Builder request) {
+        return HTTP.sendAsync(request.timeout(Duration.ofSeconds(10)).build(), HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        String error = errorField(response.body());
+                        throw new CompletionException(new IOException(
+                                error != null ? error : "Server returned " + response.statusCode()));
+                    }
+                    return response.body();
+                });
+    }
+
+    // The "error" field of a failure response, or null if the body isn't one
+    private static String errorField(String body) {
+        try {
+            return JsonReader.field(body, "error");
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void follow() {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(server + "/api/events/" + encode(gameId)))
+                .header("Accept", "text/event-stream")
+                .GET()
+                .build();
+        while (!closed && !ended) {
+            try {
+                HttpResponse<InputStream> response = HTTP.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                stream = response.body();
+                if (response.statusCode() != 200) {
+                    String error = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+                    deliver("error", error);
+                    return; // Unknown game; retrying won't help
+                }
+                readEvents(new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                // Connection lost; try again below
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                closeStream();
+            }
+            if (ended) {
+                return;
+            }
+            try {
+                Thread.sleep(RECONNECT_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void readEvents(BufferedReader in) throws IOException {
+        String event = "message";
+        StringBuilder data = new StringBuilder();
+        String line;
+        while (!closed && (line = in.readLine()) != null) {
+            if (line.isEmpty()) {
+                if (data.length() > 0) {
+                    deliver(event, data.toString());
+                    if (event.equals("end")) {
+                        ended = true;
+                        return;
+                    }
+                }
+                event = "message";
+                data.setLength(0);
+            } else if (line.startsWith("event:")) {
+                event = line.substring(6).trim();
+            } else if (line.startsWith("data:")) {
+                if (data.length() > 0) data.append('\n');
+                data.append(line.substring(5).trim());
+            }
+            // Lines starting with ':' are heartbeats
+        }
+    }
+
+    private void deliver(String event, String data) {
+        javax.swing.SwingUtilities.invokeLater(() -> {
+            if (!closed) {
+                listener.onEvent(event, data);
+            }
+        });
+    }
+
+    private void closeStream() {
+        InputStream current = stream;
+        stream = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                // Already gone
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        closeStream();
+        reader.interrupt();
+    }
+}
@@ -0,0 +1,102 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+
+// Process-wide database access shared by the GUI and the HTTP server: a connection
+// pool for queries, the write-behind queue for finished games, the cache of players'
+// statistics and the reaper of abandoned online_games rows. Closing it (done by a
+// shutdown hook) flushes the queue before the pool goes away.
+final class GameDatabase implements AutoCloseable {
+    private static volatile GameDatabase current;
+
+    private final StorageBackend backend;
+    private final String url;
+    private final ConnectionPool pool;
+    private final SqlDialect dialect;
+    private final GameResultWriter writer;
+    private final PlayerStatsCache statsCache;
+    private final StaleRowReaper reaper;
+
+    private GameDatabase(StorageBackend backend, String url, ConnectionPool pool, SqlDialect dialect) {
+        this.backend = backend;
+        this.url = url;
+        this.pool = pool;
+        this.dialect = dialect;
+        this.statsCache = new PlayerStatsCache(pool);
+        this.writer = new GameResultWriter(pool, dialect, GameResultWriter.DEFAULT_CAPACITY, statsCache::invalidate);
+        this.reaper = new StaleRowReaper(pool, dialect).start();
+    }
+
+    // Opens the pool, checking now rather than on the first game that the database is
+    // reachable, and creates the tables if they are missing
+    static GameDatabase open(StorageBackend backend) throws SQLException {
+        String url = backend.url();
+        ConnectionPool pool = new ConnectionPool(url, backend.user(), backend.password(),
+                ConnectionPool.DEFAULT_SIZE, backend.connectionInit);
+        SqlDialect dialect;
+        try (Connection conn = pool.getConnection()) {
+            dialect = SqlDialect.of(conn);
+            GameSchema.createTablesIfNotExist(conn, dialect);
+        } catch (SQLException | RuntimeException e) {
+            pool.close();
+            throw e;
+        }
+
+        GameDatabase database = new GameDatabase(backend, url, pool, dialect);
+        Runtime.getRuntime().addShutdownHook(new Thread(database::close, "database-shutdown"));
+        current = database;
+        return database;
+    }
+
+    // The open database, or null when running without one
+    static GameDatabase current() {
+        return current;
+    }
+
+    StorageBackend backend() {
+        return backend;
+    }
+
+    String url() {
+        return url;
+    }
+
+    SqlDialect dialect() {
+        return dialect;
+    }
+
+    Connection getConnection() throws SQLException {
+        return pool.getConnection();
+    }
+
+    // Queues a finished game for writing; never blocks
+    boolean saveGameResult(GameResultWriter.GameResult result) {
+        return writer.submit(result);
+    }
+
+    // The player's statistics, loaded off the caller's thread unless cached
+    CompletableFuture<PlayerStatsCache.PlayerStats> playerStats(String playerName) {
+        return statsCache.get(playerName);
+    }
+
+    int queueDepth() {
+        return writer.queueDepth();
+    }
+
+    String metrics() {
+        return String.format("Connections: %d open, %d idle, max %d%n%s%nPlayer stats cache: %d hits, %d misses"
+                + "%nStale online games deleted: %d", pool.openConnections(), pool.idleConnections(), pool.maxSize(),
+                writer.metrics(), statsCache.hits(), statsCache.misses(), reaper.deleted());
+    }
+
+    @Override
+    public synchronized void close() {
+        reaper.close();
+        writer.close();
+        statsCache.close();
+        pool.close();
+        if (current == this) {
+            current = null;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+// Game ids that are unique across servers without asking the database or taking a
+// lock, Snowflake style: 41 bits of milliseconds since 2024, 10 bits of node id
+// and a 12-bit sequence within the millisecond, written as 13 characters of
+// Crockford base32. Ids sort in the order they were made. When more than one server
+// makes ids, each must have its own -Dtictactoe.node.id (0-1023); without one a
+// server is node 0, which is only safe if it is the only one.
+final class GameIds {
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    static final int LENGTH = 13;
+    private static final long EPOCH_MILLIS = 1_704_067_200_000L; // 2024-01-01T00:00:00Z
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    static final int NODE_ID = nodeId();
+
+    // Milliseconds and sequence of the last id, packed as (millis << 12 | sequence)
+    private static final AtomicLong last = new AtomicLong();
+
+    private GameIds() {
+    }
+
+    private static int nodeId() {
+        Integer configured = Integer.getInteger("tictactoe.node.id");
+        if (configured == null) {
+            // A random id would collide between a few dozen servers, so don't pretend
+            System.err.println("tictactoe.node.id is not set; using node 0. Game ids are only unique " +
+                    "if every server has its own -Dtictactoe.node.id.");
+            return 0;
+        }
+        if (configured < 0 || configured > MAX_NODE) {
+            throw new IllegalArgumentException("tictactoe.node.id must be 0-" + MAX_NODE + ": " + configured);
+        }
+        return configured;
+    }
+
+    static String next() {
+        return format(nextLong());
+    }
+
+    // When the sequence runs out within a millisecond, or the clock steps back, ids
+    // borrow from the next millisecond, so they never repeat or go backwards
+    static long nextLong() {
+        long now = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        long prev, next;
+        do {
+            prev = last.get();
+            next = Math.max(now, prev + 1);
+        } while (!last.compareAndSet(prev, next));
+        return (next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS)
+                | (long) NODE_ID << SEQUENCE_BITS
+                | (next & SEQUENCE_MASK);
+    }
+
+    static String format(long id) {
+        char[] chars = new char[LENGTH];
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    // Milliseconds since 1970 at which `id` was made
+    static long timestampMillis(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    static int node(long id) {
+        return (int) (id >>> SEQUENCE_BITS) & MAX_NODE;
+    }
+}
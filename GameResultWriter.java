@@ -0,0 +1,268 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import javax.sql.DataSource;
+
+// Write-behind queue for finished games. The EDT and HTTP threads only enqueue; one
+// writer thread takes whatever has piled up (up to BATCH_SIZE results), inserts it
+// into game_stats with a single executeBatch and adds the player_stats totals with a
+// batched upsert in the same transaction, so concurrent games for one player can't
+// lose each other's updates. The same transaction adds to the totals in
+// stats_summary, so they always match the tables. Once a batch commits, the
+// listener given at construction hears about it (PlayerStatsCache drops the players'
+// cached statistics). A full queue drops the result and counts it rather than
+// blocking the caller.
+final class GameResultWriter implements AutoCloseable {
+    static final int DEFAULT_CAPACITY = Integer.getInteger("tictactoe.db.queueCapacity", 10_000);
+    static final int BATCH_SIZE = Integer.getInteger("tictactoe.db.batchSize", 100);
+    static final long SHUTDOWN_TIMEOUT_MILLIS = Long.getLong("tictactoe.db.shutdownTimeoutMillis", 10_000L);
+
+    private static final String INSERT_GAME_SQL = "INSERT INTO game_stats (player_name, game_mode, difficulty, " +
+            "player_symbol, result, game_id, opponent_name, moves) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_SUMMARY_SQL = "UPDATE stats_summary " +
+            "SET total_games = total_games + ?, total_players = total_players + ? WHERE id = 1";
+    // Players are looked up this many at a time, padded, so the statement text never changes
+    private static final int PLAYER_LOOKUP_CHUNK = 16;
+    private static final String EXISTING_PLAYERS_SQL = "SELECT player_name FROM player_stats WHERE player_name IN (" +
+            String.join(", ", Collections.nCopies(PLAYER_LOOKUP_CHUNK, "?")) + ")";
+
+    // One finished game, as recorded in game_stats
+    static final class GameResult {
+        final String playerName;
+        final String gameMode;     // "Online", "VS AI" or "Two Player"
+        final String difficulty;
+        final String playerSymbol;
+        final String result;       // "Win"/"Loss"/"Draw", or "X Win"/"O Win" in two-player games
+        final String gameId;
+        final String opponentName;
+        final String moves;
+
+        GameResult(String playerName, String gameMode, String difficulty, String playerSymbol,
+                   String result, String gameId, String opponentName, String moves) {
+            this.playerName = playerName;
+            this.gameMode = gameMode;
+            this.difficulty = difficulty;
+            this.playerSymbol = playerSymbol;
+            this.result = result;
+            this.gameId = gameId;
+            this.opponentName = opponentName;
+            this.moves = moves;
+        }
+
+        // {total, wins, losses, draws, online wins, online losses} this game adds to player_stats.
+        // Two-player games count X as the player.
+        int[] statsIncrements() {
+            boolean win = result.equals("Win") || result.equals("X Win");
+            boolean loss = result.equals("Loss") || result.equals("O Win");
+            boolean online = gameMode.equals("Online");
+            return new int[]{1, win ? 1 : 0, loss ? 1 : 0, win || loss ? 0 : 1,
+                    online && win ? 1 : 0, online && loss ? 1 : 0};
+        }
+    }
+
+    private static final GameResult SHUTDOWN = new GameResult("", "", "", "", "", "", "", "");
+
+    private final DataSource dataSource;
+    private final SqlDialect dialect;
+    private final BlockingQueue<GameResult> queue;
+    private final Consumer<List<GameResult>> onCommit;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    // Only the writer thread updates these
+    private volatile long written, failed, flushes;
+    private volatile long lastFlushNanos, maxFlushNanos, totalFlushNanos;
+
+    GameResultWriter(DataSource dataSource, SqlDialect dialect, int capacity) {
+        this(dataSource, dialect, capacity, batch -> { });
+    }
+
+    // `onCommit` runs on the writer thread with each batch once it has committed
+    GameResultWriter(DataSource dataSource, SqlDialect dialect, int capacity, Consumer<List<GameResult>> onCommit) {
+        this.dataSource = dataSource;
+        this.dialect = dialect;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.onCommit = onCommit;
+        this.writer = new Thread(this::run, "game-result-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Never blocks; false if the result was dropped because the queue is full or closed
+    boolean submit(GameResult result) {
+        if (closed || !queue.offer(result)) {
+            dropped.increment();
+            return false;
+        }
+        submitted.increment();
+        return true;
+    }
+
+    private void run() {
+        List<GameResult> batch = new ArrayList<>(BATCH_SIZE);
+        boolean stopping = false;
+        try {
+            while (!stopping) {
+                batch.add(queue.take());
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                stopping = batch.remove(SHUTDOWN);
+                flush(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Anything that raced in behind the shutdown marker
+        queue.drainTo(batch);
+        batch.remove(SHUTDOWN);
+        flush(batch);
+    }
+
+    private void flush(List<GameResult> batch) {
+        if (batch.isEmpty()) return;
+
+        long start = System.nanoTime();
+        boolean committed = false;
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement insert = conn.prepareStatement(INSERT_GAME_SQL)) {
+                    for (GameResult result : batch) {
+                        insert.setString(1, result.playerName);
+                        insert.setString(2, result.gameMode);
+                        insert.setString(3, result.difficulty);
+                        insert.setString(4, result.playerSymbol);
+                        insert.setString(5, result.result);
+                        insert.setString(6, result.gameId);
+                        insert.setString(7, result.opponentName);
+                        insert.setString(8, result.moves);
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                }
+                int newPlayers = updatePlayerStats(conn, dialect, batch);
+                try (PreparedStatement summary = conn.prepareStatement(UPDATE_SUMMARY_SQL)) {
+                    summary.setInt(1, batch.size());
+                    summary.setInt(2, newPlayers);
+                    summary.executeUpdate();
+                }
+                conn.commit();
+                committed = true;
+                written += batch.size();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            failed += batch.size();
+            System.err.println("Error saving " + batch.size() + " game result(s): " + e.getMessage());
+        }
+        if (committed) {
+            try {
+                onCommit.accept(batch);
+            } catch (RuntimeException e) {
+                System.err.println("Error after saving game results: " + e);
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        lastFlushNanos = elapsed;
+        maxFlushNanos = Math.max(maxFlushNanos, elapsed);
+        totalFlushNanos += elapsed;
+        flushes++;
+    }
+
+    // One upsert per player in the batch, with the batch's totals; returns how many
+    // of the players are new
+    private static int updatePlayerStats(Connection conn, SqlDialect dialect, List<GameResult> batch)
+            throws SQLException {
+        Map<String, int[]> totals = new LinkedHashMap<>();
+        for (GameResult result : batch) {
+            int[] sum = totals.computeIfAbsent(result.playerName, name -> new int[6]);
+            int[] increments = result.statsIncrements();
+            for (int i = 0; i < sum.length; i++) {
+                sum[i] += increments[i];
+            }
+        }
+
+        int newPlayers = totals.size() - countExistingPlayers(conn, new ArrayList<>(totals.keySet()));
+
+        try (PreparedStatement upsert = conn.prepareStatement(dialect.playerStatsUpsert)) {
+            for (Map.Entry<String, int[]> entry : totals.entrySet()) {
+                upsert.setString(1, entry.getKey());
+                int[] sum = entry.getValue();
+                for (int i = 0; i < sum.length; i++) {
+                    upsert.setInt(i + 2, sum[i]);
+                }
+                upsert.addBatch();
+            }
+            upsert.executeBatch();
+        }
+        return Math.max(0, newPlayers);
+    }
+
+    private static int countExistingPlayers(Connection conn, List<String> names) throws SQLException {
+        int existing = 0;
+        try (PreparedStatement lookup = conn.prepareStatement(EXISTING_PLAYERS_SQL)) {
+            for (int from = 0; from < names.size(); from += PLAYER_LOOKUP_CHUNK) {
+                for (int i = 0; i < PLAYER_LOOKUP_CHUNK; i++) {
+                    // Repeats the chunk's last name to fill it; IN matches each row once
+                    lookup.setString(i + 1, names.get(Math.min(from + i, names.size() - 1)));
+                }
+                try (ResultSet rs = lookup.executeQuery()) {
+                    while (rs.next()) {
+                        existing++;
+                    }
+                }
+            }
+        }
+        return existing;
+    }
+
+    int queueDepth() {
+        return queue.size();
+    }
+
+    // Results written or given up on so far
+    long processed() {
+        return written + failed;
+    }
+
+    String metrics() {
+        long count = flushes;
+        return String.format("Write queue: %d pending, %d submitted, %d written, %d failed, %d dropped%n" +
+                        "Flushes: %d, latency last %.1f ms / avg %.1f ms / max %.1f ms",
+                queue.size(), submitted.sum(), written, failed, dropped.sum(),
+                count, lastFlushNanos / 1e6, count == 0 ? 0.0 : totalFlushNanos / 1e6 / count, maxFlushNanos / 1e6);
+    }
+
+    // Stops taking new results and waits for the queued ones to be written
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            if (queue.offer(SHUTDOWN, SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                writer.join(SHUTDOWN_TIMEOUT_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            System.err.println("Gave up waiting for " + queue.size() + " game result(s) to be saved");
+        }
+    }
+}
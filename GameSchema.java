@@ -0,0 +1,169 @@
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// The game's tables, the same on every backend; only the auto-increment key is
+// spelled per dialect. Created on startup if missing, along with their indexes.
+final class GameSchema {
+    private GameSchema() {
+    }
+
+    static void createTablesIfNotExist(Connection conn, SqlDialect dialect) throws SQLException {
+        String createTableSQL = "CREATE TABLE IF NOT EXISTS game_stats (" +
+                "id " + dialect.identityColumn + "," +
+                "player_name VARCHAR(50) NOT NULL," +
+                "game_mode VARCHAR(20) NOT NULL," +
+                "difficulty VARCHAR(10)," +
+                "player_symbol CHAR(1)," +
+                "result VARCHAR(10) NOT NULL," +
+                "play_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                "game_id VARCHAR(20)," +
+                "opponent_name VARCHAR(50)," +
+                "moves TEXT" +
+                ")";
+
+        String createPlayerStatsSQL = "CREATE TABLE IF NOT EXISTS player_stats (" +
+                "id " + dialect.identityColumn + "," +
+                "player_name VARCHAR(50) UNIQUE NOT NULL," +
+                "total_games INT DEFAULT 0," +
+                "wins INT DEFAULT 0," +
+                "losses INT DEFAULT 0," +
+                "draws INT DEFAULT 0," +
+                "online_wins INT DEFAULT 0," +
+                "online_losses INT DEFAULT 0," +
+                "last_played TIMESTAMP" +
+                ")";
+
+        String createOnlineGamesSQL = "CREATE TABLE IF NOT EXISTS online_games (" +
+                "game_id VARCHAR(20) PRIMARY KEY," +
+                "player1 VARCHAR(50) NOT NULL," +
+                "player2 VARCHAR(50)," +
+                "current_player CHAR(1) DEFAULT 'X'," +
+                "board_state VARCHAR(225)," +
+                "board_size INT DEFAULT 3," +
+                "win_length INT DEFAULT 3," +
+                "status VARCHAR(20) DEFAULT 'waiting'," +
+                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                ")";
+
+        // Running totals kept by GameResultWriter, so nothing has to count game_stats
+        String createSummarySQL = "CREATE TABLE IF NOT EXISTS stats_summary (" +
+                "id INT PRIMARY KEY," +
+                "total_games BIGINT DEFAULT 0," +
+                "total_players BIGINT DEFAULT 0" +
+                ")";
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(createTableSQL);
+            stmt.execute(createPlayerStatsSQL);
+            stmt.execute(createOnlineGamesSQL);
+            stmt.execute(createSummarySQL);
+        }
+
+        migrateOnlineGamesTable(conn, dialect);
+        seedStatsSummary(conn);
+
+        // Covers the recent games query in the statistics window: the player's rows
+        // come off the index newest first, with every column it shows
+        createIndexIfNotExists(conn, "game_stats", "idx_game_stats_player_recent",
+                "player_name, play_date, game_mode, difficulty, result, opponent_name");
+
+        // For status queries and the StaleRowReaper's sweep of abandoned games
+        createIndexIfNotExists(conn, "online_games", "idx_online_games_status_created", "status, created_at");
+    }
+
+    // The one summary row, counted from the tables the first time. Another server
+    // starting at the same moment may insert it first, which is fine.
+    private static void seedStatsSummary(Connection conn) throws SQLException {
+        if (hasSummaryRow(conn)) {
+            return;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO stats_summary (id, total_games, total_players) " +
+                    "SELECT 1, (SELECT COUNT(*) FROM game_stats), (SELECT COUNT(*) FROM player_stats)");
+        } catch (SQLException e) {
+            if (!hasSummaryRow(conn)) {
+                throw e;
+            }
+        }
+    }
+
+    private static boolean hasSummaryRow(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id FROM stats_summary WHERE id = 1")) {
+            return rs.next();
+        }
+    }
+
+    // MySQL has no CREATE INDEX IF NOT EXISTS, so look first
+    static void createIndexIfNotExists(Connection conn, String table, String index, String columns)
+            throws SQLException {
+        if (hasIndex(conn, table, index)) {
+            return;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE INDEX " + index + " ON " + table + " (" + columns + ")");
+        }
+    }
+
+    // Tables created before N x N boards only have room for a 3x3 board_state.
+    // Those only ever existed on MySQL; other backends start with the new columns.
+    // Tables from before this also had an empty 3x3 board as board_state's default,
+    // which is wrong for bigger boards; SQLite can't drop a default, but nothing
+    // relies on it there.
+    private static void migrateOnlineGamesTable(Connection conn, SqlDialect dialect) throws SQLException {
+        if (dialect == SqlDialect.SQLITE) {
+            return;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            if (dialect == SqlDialect.MYSQL && !hasColumn(conn, "online_games", "board_size")) {
+                stmt.execute("ALTER TABLE online_games MODIFY board_state VARCHAR(225)");
+                stmt.execute("ALTER TABLE online_games ADD COLUMN board_size INT DEFAULT 3");
+                stmt.execute("ALTER TABLE online_games ADD COLUMN win_length INT DEFAULT 3");
+            } else if (columnDefault(conn, "online_games", "board_state") != null) {
+                stmt.execute("ALTER TABLE online_games ALTER COLUMN board_state DROP DEFAULT");
+            }
+        }
+    }
+
+    // Metadata lookups take names as the database stores them (upper case on H2)
+    static boolean hasIndex(Connection conn, String table, String index) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        if (meta.storesUpperCaseIdentifiers()) {
+            table = table.toUpperCase();
+        }
+        try (ResultSet rs = meta.getIndexInfo(null, null, table, false, true)) {
+            while (rs.next()) {
+                if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // The column's default as the database reports it, or null if it has none
+    private static String columnDefault(Connection conn, String table, String column) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        if (meta.storesUpperCaseIdentifiers()) {
+            table = table.toUpperCase();
+            column = column.toUpperCase();
+        }
+        try (ResultSet rs = meta.getColumns(null, null, table, column)) {
+            return rs.next() ? rs.getString("COLUMN_DEF") : null;
+        }
+    }
+
+    static boolean hasColumn(Connection conn, String table, String column) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        if (meta.storesUpperCaseIdentifiers()) {
+            table = table.toUpperCase();
+            column = column.toUpperCase();
+        }
+        try (ResultSet rs = meta.getColumns(null, null, table, column)) {
+            return rs.next();
+        }
+    }
+}
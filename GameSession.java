@@ -0,0 +1,202 @@
+import java.util.UUID;
+
+// One online game hosted by the server. Every change goes through the session's own
+// lock, so a game has a single writer while different games never contend. Each
+// seat gets a random token when it is taken; a move is only accepted with the token
+// of the player whose turn it is. Every change is published on the game's channel,
+// after the lock is released; states carry a version so a slower publish can't
+// overwrite a newer one.
+final class GameSession {
+    static final String WAITING = "waiting";
+    static final String ACTIVE = "active";
+    static final String COMPLETED = "completed";
+    static final String DRAW = "draw";
+    // Abandoned; see SessionReaper
+    static final String EXPIRED = "expired";
+
+    final String gameId;
+    // Short code players type to join, or null
+    final String joinCode;
+    private final GameState game;
+    private final MoveStack moves = new MoveStack();
+    private final GameChannel channel;
+    private final String xToken = UUID.randomUUID().toString();
+    private String oToken;
+    private final String player1;
+    private String player2;
+    private String status = WAITING;
+    private long version; // Bumped by every change
+    private volatile long lastActivityMillis = System.currentTimeMillis();
+
+    GameSession(String gameId, String player1, int size, int winLength) {
+        this(gameId, null, player1, size, winLength);
+    }
+
+    GameSession(String gameId, String joinCode, String player1, int size, int winLength) {
+        this.gameId = gameId;
+        this.joinCode = joinCode;
+        this.player1 = player1;
+        this.game = new GameState(size, winLength); // validates the combination
+        this.channel = GameChannel.open(gameId);
+        channel.publishState(version, stateJson(-1));
+    }
+
+    // Token for the creator, who plays X
+    String creatorToken() {
+        return xToken;
+    }
+
+    // Takes the O seat; returns its token
+    String join(String player) {
+        String token;
+        String state;
+        long stateVersion;
+        synchronized (this) {
+            if (!status.equals(WAITING)) {
+                throw new IllegalStateException("Game already started");
+            }
+            player2 = player;
+            token = oToken = UUID.randomUUID().toString();
+            status = ACTIVE;
+            touch();
+            state = stateJson(-1);
+            stateVersion = ++version;
+        }
+        channel.publish("joined", JsonWriter.toString(w -> w.beginObject().name("player").value(player).endObject()));
+        channel.publishState(stateVersion, state);
+        return token;
+    }
+
+    // Plays `index` for the token's owner and returns the new state
+    String move(String token, int index) {
+        String state;
+        long stateVersion;
+        synchronized (this) {
+            if (!status.equals(ACTIVE)) {
+                throw new IllegalStateException("Game is not in progress");
+            }
+            char player = token == null ? ' ' : token.equals(xToken) ? 'X' : token.equals(oToken) ? 'O' : ' ';
+            if (player == ' ') {
+                throw new IllegalArgumentException("Not a player in this game");
+            }
+            if (player != game.toMove()) {
+                throw new IllegalStateException("Not " + player + "'s turn");
+            }
+            if (index < 0 || index >= game.cellCount()) {
+                throw new IllegalArgumentException("Cell " + index + " is off the board");
+            }
+            game.place(index, player);
+            moves.push(index);
+            touch();
+
+            if (game.hasWinner()) {
+                status = COMPLETED;
+            } else if (game.isFull()) {
+                status = DRAW;
+            }
+            state = stateJson(index);
+            stateVersion = ++version;
+        }
+        channel.publishState(stateVersion, state);
+        return state;
+    }
+
+    // Ends a game nobody is playing any more; false if it has already ended
+    boolean expire() {
+        String state;
+        long stateVersion;
+        synchronized (this) {
+            if (!status.equals(WAITING) && !status.equals(ACTIVE)) {
+                return false;
+            }
+            status = EXPIRED;
+            state = stateJson(lastMove());
+            stateVersion = ++version;
+        }
+        channel.publishState(stateVersion, state);
+        return true;
+    }
+
+    synchronized boolean isFinished() {
+        return status.equals(COMPLETED) || status.equals(DRAW);
+    }
+
+    synchronized String status() {
+        return status;
+    }
+
+    long lastActivityMillis() {
+        return lastActivityMillis;
+    }
+
+    synchronized String stateJson() {
+        return stateJson(lastMove());
+    }
+
+    // Writes the state's fields into an object the caller has opened, so a response
+    // can add its own fields alongside them
+    synchronized void writeStateFields(JsonWriter out) {
+        writeStateFields(out, lastMove());
+    }
+
+    // game_stats rows for both players, from each one's point of view
+    synchronized GameResultWriter.GameResult[] results() {
+        char winner = game.winner();
+        String moveList = moves.encode();
+        return new GameResultWriter.GameResult[]{
+                result(player1, 'X', winner, player2, moveList),
+                result(player2, 'O', winner, player1, moveList)
+        };
+    }
+
+    // Ends the event stream; late subscribers get a 404
+    void closeChannel() {
+        channel.close();
+    }
+
+    private GameResultWriter.GameResult result(String player, char symbol, char winner, String opponent,
+                                               String moveList) {
+        String outcome = winner == ' ' ? "Draw" : winner == symbol ? "Win" : "Loss";
+        return new GameResultWriter.GameResult(player, "Online", "Online", String.valueOf(symbol), outcome,
+                gameId, opponent, moveList);
+    }
+
+    // Counts as activity for the reaper
+    void touch() {
+        lastActivityMillis = System.currentTimeMillis();
+    }
+
+    private int lastMove() {
+        return moves.size() == 0 ? -1 : moves.peek();
+    }
+
+    private String stateJson(int lastMove) {
+        return JsonWriter.toString(w -> {
+            w.beginObject();
+            writeStateFields(w, lastMove);
+            w.endObject();
+        });
+    }
+
+    // What "state" events carry; empty cells are '-' in the board string
+    private void writeStateFields(JsonWriter out, int lastMove) {
+        char winner = game.winner();
+        out.name("gameId").value(gameId);
+        if (joinCode != null) {
+            out.name("joinCode").value(joinCode);
+        }
+        out.name("size").value(game.size())
+                .name("k").value(game.winLength())
+                .name("board").value(game.toBoardString('-'))
+                .name("currentPlayer").value(game.toMove())
+                .name("status").value(status);
+        if (winner == ' ') {
+            out.name("winner").nullValue();
+        } else {
+            out.name("winner").value(winner);
+        }
+        out.name("player1").value(player1)
+                .name("player2").value(player2)
+                .name("lastMove").value(lastMove);
+    }
+}
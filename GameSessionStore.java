@@ -0,0 +1,93 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+// Authoritative state of the games the server hosts, by game id. Sessions lock
+// themselves, so the map is the only shared structure. Ids come from GameIds, so
+// they never collide; players find a game by its id or its short join code. A
+// game touches MySQL once, when it finishes: both players' results go to the
+// write-behind queue. Games nobody touches for a while are expired by the
+// SessionReaper.
+final class GameSessionStore {
+    private static final GameSessionStore SHARED = new GameSessionStore();
+
+    static {
+        SHARED.reaper.start();
+    }
+
+    private final ConcurrentHashMap<String, GameSession> sessions = new ConcurrentHashMap<>();
+    private final JoinCodes joinCodes = new JoinCodes(JoinCodes.TTL_MILLIS);
+    private final SessionReaper reaper = new SessionReaper(this);
+
+    static GameSessionStore shared() {
+        return SHARED;
+    }
+
+    GameSession create(String player, int size, int winLength) {
+        BoardGeometry.of(size, winLength); // validates the combination
+        String name = player == null || player.isBlank() ? "Guest" : player;
+        String gameId = GameIds.next();
+        GameSession session = new GameSession(gameId, joinCodes.register(gameId), name, size, winLength);
+        sessions.put(gameId, session);
+        reaper.schedule(session);
+        return session;
+    }
+
+    // The session for a game id or join code, or null if there is none
+    GameSession get(String gameIdOrCode) {
+        if (gameIdOrCode == null) {
+            return null;
+        }
+        GameSession session = sessions.get(gameIdOrCode);
+        if (session == null) {
+            String gameId = joinCodes.resolve(gameIdOrCode);
+            session = gameId == null ? null : sessions.get(gameId);
+        }
+        return session;
+    }
+
+    String join(GameSession session, String player) {
+        return session.join(player == null || player.isBlank() ? "Guest" : player);
+    }
+
+    String move(GameSession session, String token, int index) {
+        String state = session.move(token, index);
+        if (session.isFinished() && sessions.remove(session.gameId, session)) {
+            joinCodes.release(session.joinCode, session.gameId);
+            finish(session);
+        }
+        return state;
+    }
+
+    // Ends an abandoned game; nobody's results are recorded
+    boolean expire(GameSession session) {
+        if (!session.expire()) {
+            return false;
+        }
+        if (sessions.remove(session.gameId, session)) {
+            joinCodes.release(session.joinCode, session.gameId);
+            session.closeChannel();
+        }
+        return true;
+    }
+
+    long expiredCount() {
+        return reaper.expired();
+    }
+
+    int count(String status) {
+        int count = 0;
+        for (GameSession session : sessions.values()) {
+            if (session.status().equals(status)) count++;
+        }
+        return count;
+    }
+
+    private static void finish(GameSession session) {
+        session.closeChannel();
+        GameDatabase database = GameDatabase.current();
+        if (database != null) {
+            for (GameResultWriter.GameResult result : session.results()) {
+                database.saveGameResult(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,427 @@
+// Headless game state for an N x N board with K-in-a-row. Stones are kept as X and O
+// bitsets (bit = row * size + col); on the classic 3x3 board these are exactly the two
+// 9-bit masks the mask-based search works on. Win, threat and evaluation state is
+// updated incrementally per move from per-window stone counts, so nothing rescans
+// the whole board.
+class GameState {
+    static final int SIZE = 3;
+    static final int CELLS = SIZE * SIZE;
+    static final int FULL_MASK = (1 << CELLS) - 1;
+
+    // Rows, columns and both diagonals of the classic board
+    static final int[] WIN_LINES = {
+            0b000_000_111, 0b000_111_000, 0b111_000_000,
+            0b001_001_001, 0b010_010_010, 0b100_100_100,
+            0b100_010_001, 0b001_010_100
+    };
+
+    // Move-ordering bonuses that dominate any positional gain
+    private static final int WIN_GAIN = 1 << 26;
+    private static final int BLOCK_GAIN = 1 << 24;
+
+    private final BoardGeometry geometry;
+    private final int size;
+    private final int winLength;
+    private final long[] xBits;
+    private final long[] oBits;
+    // Stones per player in each K-cell window
+    private final byte[] xWindow;
+    private final byte[] oWindow;
+
+    private int xStones, oStones;
+    private int xComplete, oComplete; // windows filled by one player
+    private int xThreats, oThreats;   // windows one stone short, untouched by the opponent
+    private int eval;                 // sum of open-window weights, X minus O
+    private long hash;
+
+    GameState() {
+        this(SIZE, SIZE);
+    }
+
+    GameState(int size, int winLength) {
+        this.geometry = BoardGeometry.of(size, winLength);
+        this.size = size;
+        this.winLength = winLength;
+        int words = (geometry.cells + 63) >>> 6;
+        this.xBits = new long[words];
+        this.oBits = new long[words];
+        this.xWindow = new byte[geometry.windowCount];
+        this.oWindow = new byte[geometry.windowCount];
+    }
+
+    private GameState(GameState other) {
+        this.geometry = other.geometry;
+        this.size = other.size;
+        this.winLength = other.winLength;
+        this.xBits = other.xBits.clone();
+        this.oBits = other.oBits.clone();
+        this.xWindow = other.xWindow.clone();
+        this.oWindow = other.oWindow.clone();
+        this.xStones = other.xStones;
+        this.oStones = other.oStones;
+        this.xComplete = other.xComplete;
+        this.oComplete = other.oComplete;
+        this.xThreats = other.xThreats;
+        this.oThreats = other.oThreats;
+        this.eval = other.eval;
+        this.hash = other.hash;
+    }
+
+    // Classic 3x3 board from a pair of 9-bit masks
+    static GameState fromMasks(int xMask, int oMask) {
+        if ((xMask & oMask) != 0 || ((xMask | oMask) & ~FULL_MASK) != 0) {
+            throw new IllegalArgumentException("Invalid board masks");
+        }
+        GameState state = new GameState();
+        for (int cell = 0; cell < CELLS; cell++) {
+            if ((xMask & (1 << cell)) != 0) {
+                state.place(cell, 'X');
+            } else if ((oMask & (1 << cell)) != 0) {
+                state.place(cell, 'O');
+            }
+        }
+        return state;
+    }
+
+    // Parses a square board string ('X', 'O', and ' ' or '-' for empty cells)
+    static GameState fromBoardString(String board) {
+        int size = board == null ? 0 : (int) Math.round(Math.sqrt(board.length()));
+        return fromBoardString(board, BoardGeometry.defaultWinLength(size));
+    }
+
+    static GameState fromBoardString(String board, int winLength) {
+        int size = board == null ? 0 : (int) Math.round(Math.sqrt(board.length()));
+        if (board == null || size * size != board.length()) {
+            throw new IllegalArgumentException("Board must be a square number of cells");
+        }
+        GameState state = new GameState(size, winLength);
+        for (int i = 0; i < board.length(); i++) {
+            char c = board.charAt(i);
+            if (c == 'X' || c == 'O') {
+                state.place(i, c);
+            } else if (c != ' ' && c != '-') {
+                throw new IllegalArgumentException("Invalid cell '" + c + "' at " + i);
+            }
+        }
+        return state;
+    }
+
+    // Cell index on the classic 3x3 board
+    static int cell(int row, int col) {
+        return row * SIZE + col;
+    }
+
+    static boolean isWin(int mask) {
+        for (int line : WIN_LINES) {
+            if ((mask & line) == line) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int winLength() {
+        return winLength;
+    }
+
+    int cellCount() {
+        return geometry.cells;
+    }
+
+    BoardGeometry geometry() {
+        return geometry;
+    }
+
+    boolean isClassic() {
+        return size == SIZE && winLength == SIZE;
+    }
+
+    int index(int row, int col) {
+        return row * size + col;
+    }
+
+    // The 9-bit masks below only exist for the classic board
+    int xMask() {
+        requireClassic();
+        return (int) xBits[0];
+    }
+
+    int oMask() {
+        requireClassic();
+        return (int) oBits[0];
+    }
+
+    int mask(char symbol) {
+        return symbol == 'X' ? xMask() : oMask();
+    }
+
+    int occupiedMask() {
+        return xMask() | oMask();
+    }
+
+    int emptyMask() {
+        return ~occupiedMask() & FULL_MASK;
+    }
+
+    private void requireClassic() {
+        if (!isClassic()) {
+            throw new IllegalStateException("Bit masks are only available on the 3x3 board");
+        }
+    }
+
+    int moveCount() {
+        return xStones + oStones;
+    }
+
+    long hash() {
+        return hash;
+    }
+
+    boolean isEmpty(int cell) {
+        long bit = 1L << cell;
+        int word = cell >>> 6;
+        return ((xBits[word] | oBits[word]) & bit) == 0;
+    }
+
+    char get(int cell) {
+        long bit = 1L << cell;
+        int word = cell >>> 6;
+        if ((xBits[word] & bit) != 0) return 'X';
+        if ((oBits[word] & bit) != 0) return 'O';
+        return ' ';
+    }
+
+    char get(int row, int col) {
+        return get(index(row, col));
+    }
+
+    // X always moves first, so the side to move follows from the piece counts
+    char toMove() {
+        return xStones == oStones ? 'X' : 'O';
+    }
+
+    void place(int cell, char symbol) {
+        if (cell < 0 || cell >= geometry.cells) {
+            throw new IllegalArgumentException("Cell " + cell + " is off the board");
+        }
+        if (!isEmpty(cell)) {
+            throw new IllegalStateException("Cell " + cell + " is already taken");
+        }
+        boolean isX;
+        if (symbol == 'X') {
+            isX = true;
+        } else if (symbol == 'O') {
+            isX = false;
+        } else {
+            throw new IllegalArgumentException("Invalid symbol: " + symbol);
+        }
+
+        long bit = 1L << cell;
+        int word = cell >>> 6;
+        if (isX) {
+            xBits[word] |= bit;
+            xStones++;
+        } else {
+            oBits[word] |= bit;
+            oStones++;
+        }
+        hash ^= geometry.zobrist[isX ? 0 : 1][cell];
+        updateWindows(cell, isX, 1);
+    }
+
+    void play(int cell) {
+        place(cell, toMove());
+    }
+
+    void clear(int cell) {
+        char symbol = get(cell);
+        if (symbol == ' ') {
+            return;
+        }
+        boolean isX = symbol == 'X';
+        long keep = ~(1L << cell);
+        int word = cell >>> 6;
+        if (isX) {
+            xBits[word] &= keep;
+            xStones--;
+        } else {
+            oBits[word] &= keep;
+            oStones--;
+        }
+        hash ^= geometry.zobrist[isX ? 0 : 1][cell];
+        updateWindows(cell, isX, -1);
+    }
+
+    private void updateWindows(int cell, boolean isX, int delta) {
+        for (int w : geometry.cellWindows[cell]) {
+            addWindowTotals(w, -1);
+            if (isX) {
+                xWindow[w] += delta;
+            } else {
+                oWindow[w] += delta;
+            }
+            addWindowTotals(w, 1);
+        }
+    }
+
+    private void addWindowTotals(int w, int sign) {
+        int x = xWindow[w], o = oWindow[w];
+        if (o == 0) {
+            eval += sign * geometry.windowWeight[x];
+            if (x == winLength) xComplete += sign;
+            if (x == winLength - 1) xThreats += sign;
+        }
+        if (x == 0) {
+            eval -= sign * geometry.windowWeight[o];
+            if (o == winLength) oComplete += sign;
+            if (o == winLength - 1) oThreats += sign;
+        }
+    }
+
+    void reset() {
+        java.util.Arrays.fill(xBits, 0L);
+        java.util.Arrays.fill(oBits, 0L);
+        java.util.Arrays.fill(xWindow, (byte) 0);
+        java.util.Arrays.fill(oWindow, (byte) 0);
+        xStones = oStones = 0;
+        xComplete = oComplete = 0;
+        xThreats = oThreats = 0;
+        eval = 0;
+        hash = 0;
+    }
+
+    char winner() {
+        if (xComplete > 0) return 'X';
+        if (oComplete > 0) return 'O';
+        return ' ';
+    }
+
+    boolean hasWinner() {
+        return xComplete > 0 || oComplete > 0;
+    }
+
+    // Cells of the first completed window, or an empty array if nobody has won
+    int[] winningCells() {
+        for (int w = 0; w < geometry.windowCount; w++) {
+            if (xWindow[w] == winLength || oWindow[w] == winLength) {
+                int[] cells = new int[winLength];
+                for (int i = 0; i < winLength; i++) {
+                    cells[i] = geometry.window(w, i);
+                }
+                return cells;
+            }
+        }
+        return new int[0];
+    }
+
+    // Number of windows where `player` is one stone from winning
+    int threats(char player) {
+        return player == 'X' ? xThreats : oThreats;
+    }
+
+    // An empty cell that wins immediately for `player`, or -1
+    int findWinningCell(char player) {
+        if (threats(player) == 0) {
+            return -1;
+        }
+        byte[] mine = player == 'X' ? xWindow : oWindow;
+        byte[] theirs = player == 'X' ? oWindow : xWindow;
+        for (int w = 0; w < geometry.windowCount; w++) {
+            if (mine[w] == winLength - 1 && theirs[w] == 0) {
+                for (int i = 0; i < winLength; i++) {
+                    int cell = geometry.window(w, i);
+                    if (isEmpty(cell)) {
+                        return cell;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    // Static evaluation from `player`'s point of view
+    int evaluate(char player) {
+        return player == 'X' ? eval : -eval;
+    }
+
+    // How much playing `cell` would extend `player`'s open windows and spoil the opponent's
+    int moveGain(int cell, char player) {
+        byte[] mine = player == 'X' ? xWindow : oWindow;
+        byte[] theirs = player == 'X' ? oWindow : xWindow;
+        int[] weight = geometry.windowWeight;
+        int gain = 0;
+        for (int w : geometry.cellWindows[cell]) {
+            if (theirs[w] == 0) {
+                gain += mine[w] + 1 == winLength ? WIN_GAIN : weight[mine[w] + 1] - weight[mine[w]];
+            }
+            if (mine[w] == 0) {
+                gain += theirs[w] + 1 == winLength ? BLOCK_GAIN : weight[theirs[w]];
+            }
+        }
+        return gain;
+    }
+
+    // Empty cells worth searching: every empty cell on small boards, otherwise
+    // empty cells next to an existing stone. Returns the number written to `out`.
+    int candidateMoves(int[] out) {
+        int cells = geometry.cells;
+        int count = 0;
+        if (moveCount() == 0) {
+            out[count++] = index(size / 2, size / 2);
+            return count;
+        }
+        boolean nearOnly = size > 5;
+        for (int cell = 0; cell < cells; cell++) {
+            if (isEmpty(cell) && (!nearOnly || hasNeighbour(cell))) {
+                out[count++] = cell;
+            }
+        }
+        return count;
+    }
+
+    private boolean hasNeighbour(int cell) {
+        int row = cell / size, col = cell % size;
+        for (int r = Math.max(0, row - 1); r <= Math.min(size - 1, row + 1); r++) {
+            for (int c = Math.max(0, col - 1); c <= Math.min(size - 1, col + 1); c++) {
+                if (!isEmpty(r * size + c)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    boolean isFull() {
+        return moveCount() == geometry.cells;
+    }
+
+    boolean isDraw() {
+        return isFull() && !hasWinner();
+    }
+
+    boolean isGameOver() {
+        return isFull() || hasWinner();
+    }
+
+    GameState copy() {
+        return new GameState(this);
+    }
+
+    String toBoardString(char empty) {
+        char[] cells = new char[geometry.cells];
+        for (int i = 0; i < cells.length; i++) {
+            char c = get(i);
+            cells[i] = c == ' ' ? empty : c;
+        }
+        return new String(cells);
+    }
+
+    @Override
+    public String toString() {
+        return toBoardString(' ');
+    }
+}
@@ -0,0 +1,119 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Short codes people can read out and type to join a game, kept apart from the
+// game ids. Six Crockford base32 characters give about a billion codes; each maps
+// to its game until the game ends or the code expires (-Dtictactoe.joinCode.ttlSeconds,
+// default an hour), and an expired code can be handed out again. Lookups ignore
+// case, dashes and spaces and read O as 0 and I or L as 1.
+final class JoinCodes {
+    static final int LENGTH = 6;
+    static final long TTL_MILLIS = Long.getLong("tictactoe.joinCode.ttlSeconds", 3600L) * 1000;
+    // Expired codes are swept out at most this often
+    private static final long SWEEP_INTERVAL_MILLIS = 60_000;
+
+    private static final class Entry {
+        final String gameId;
+        final long expiresAtMillis;
+
+        Entry(String gameId, long expiresAtMillis) {
+            this.gameId = gameId;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> codes = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweepMillis = new AtomicLong();
+    private final long ttlMillis;
+
+    JoinCodes(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    // A fresh code for `gameId`
+    String register(String gameId) {
+        long now = System.currentTimeMillis();
+        long sweepAt = nextSweepMillis.get();
+        if (now >= sweepAt && nextSweepMillis.compareAndSet(sweepAt, now + SWEEP_INTERVAL_MILLIS)) {
+            sweep(now);
+        }
+        Entry entry = new Entry(gameId, now + ttlMillis);
+        while (true) {
+            String code = randomCode();
+            Entry existing = codes.putIfAbsent(code, entry);
+            if (existing == null
+                    || existing.expiresAtMillis <= now && codes.replace(code, existing, entry)) {
+                return code;
+            }
+        }
+    }
+
+    // The game `code` stands for, or null if it is unknown or has expired
+    String resolve(String code) {
+        String normalized = normalize(code);
+        if (normalized == null) {
+            return null;
+        }
+        Entry entry = codes.get(normalized);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtMillis <= System.currentTimeMillis()) {
+            codes.remove(normalized, entry);
+            return null;
+        }
+        return entry.gameId;
+    }
+
+    // Frees `code` if it still belongs to `gameId`
+    void release(String code, String gameId) {
+        Entry entry = codes.get(code);
+        if (entry != null && entry.gameId.equals(gameId)) {
+            codes.remove(code, entry);
+        }
+    }
+
+    int size() {
+        return codes.size();
+    }
+
+    private void sweep(long now) {
+        codes.values().removeIf(entry -> entry.expiresAtMillis <= now);
+    }
+
+    private static String randomCode() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] chars = new char[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            chars[i] = GameIds.ALPHABET[random.nextInt(GameIds.ALPHABET.length)];
+        }
+        return new String(chars);
+    }
+
+    // Canonical form of a typed code, or null if it can't be one
+    static String normalize(String typed) {
+        if (typed == null) {
+            return null;
+        }
+        StringBuilder code = new StringBuilder(LENGTH);
+        for (int i = 0; i < typed.length(); i++) {
+            char c = Character.toUpperCase(typed.charAt(i));
+            if (c == '-' || c == ' ') {
+                continue;
+            }
+            if (c == 'O') {
+                c = '0';
+            } else if (c == 'I' || c == 'L') {
+                c = '1';
+            } else if (!(c >= '0' && c <= '9' || c >= 'A' && c <= 'Z') || c == 'U') {
+                return null;
+            }
+            code.append(c);
+            if (code.length() > LENGTH) {
+                return null;
+            }
+        }
+        return code.length() == LENGTH ? code.toString() : null;
+    }
+}
@@ -0,0 +1,149 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+// Compares JsonWriter/JsonReader with building and picking apart the same payloads
+// by string concatenation and indexOf, the way the API used to. Reports time and
+// bytes allocated per operation for the state document and a move body.
+//
+//   java JsonBenchmark [iterations]
+public class JsonBenchmark {
+    private static final String GAME_ID = "4821";
+    private static final String BOARD = "X-O--X-O-XO---X-O--X-O-XO---X-O--X-O-XO---X-O--X-O-XO---X-O--X-O";
+    private static final String PLAYER1 = "Alice \"the bold\"";
+    private static final String PLAYER2 = "Bob";
+    private static final byte[] MOVE = ("{\"gameId\":\"4821\",\"index\":42,"
+            + "\"token\":\"2d550c10-ea37-4db1-b67b-c68425723e3a\"}").getBytes(StandardCharsets.UTF_8);
+    private static final String[] MOVE_FIELDS = {"gameId", "index", "token"};
+
+    private static final OutputStream SINK = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private static long blackhole;
+
+    public static void main(String[] args) throws IOException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+
+        System.out.printf("%-24s %12s %14s%n", "benchmark", "ns/op", "bytes/op");
+        for (int round = 0; round < 2; round++) {
+            boolean report = round == 1; // The first round is warm-up
+            run("write concat", iterations, report, () -> {
+                byte[] bytes = concatState().getBytes(StandardCharsets.UTF_8);
+                SINK.write(bytes, 0, bytes.length);
+                blackhole += bytes.length;
+            });
+            run("write JsonWriter", iterations, report, () -> {
+                try (JsonWriter out = new JsonWriter(SINK)) {
+                    writeState(out);
+                }
+            });
+            run("read indexOf", iterations, report, () -> {
+                String body = new String(MOVE, StandardCharsets.UTF_8);
+                blackhole += naiveField(body, "gameId").length()
+                        + Integer.parseInt(naiveField(body, "index"))
+                        + naiveField(body, "token").length();
+            });
+            run("read JsonReader", iterations, report, () -> {
+                JsonReader in = new JsonReader(MOVE);
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.selectName(MOVE_FIELDS)) {
+                        case 0: blackhole += in.nextString().length(); break;
+                        case 1: blackhole += in.nextInt(); break;
+                        case 2: blackhole += in.nextString().length(); break;
+                        default: in.skipValue();
+                    }
+                }
+                in.endObject();
+            });
+        }
+
+        // Both writers must agree before their numbers mean anything
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        try (JsonWriter out = new JsonWriter(streamed)) {
+            writeState(out);
+        }
+        if (!streamed.toString(StandardCharsets.UTF_8).equals(concatState())) {
+            throw new IllegalStateException("Writers disagree:\n" + streamed + "\n" + concatState());
+        }
+        System.out.println("(checksum " + blackhole + ")");
+    }
+
+    private interface Op {
+        void run() throws IOException;
+    }
+
+    private static void run(String name, int iterations, boolean report, Op op) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long bytesBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            op.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+        if (report) {
+            System.out.printf("%-24s %12.1f %14.1f%n", name,
+                    (double) elapsed / iterations, (double) allocated / iterations);
+        }
+    }
+
+    private static void writeState(JsonWriter out) {
+        out.beginObject()
+                .name("gameId").value(GAME_ID)
+                .name("size").value(8)
+                .name("k").value(5)
+                .name("board").value(BOARD)
+                .name("currentPlayer").value('X')
+                .name("status").value("active")
+                .name("winner").nullValue()
+                .name("player1").value(PLAYER1)
+                .name("player2").value(PLAYER2)
+                .name("lastMove").value(42)
+                .endObject();
+    }
+
+    private static String concatState() {
+        return "{\"gameId\":" + quote(GAME_ID) +
+                ",\"size\":" + 8 +
+                ",\"k\":" + 5 +
+                ",\"board\":" + quote(BOARD) +
+                ",\"currentPlayer\":\"X\"" +
+                ",\"status\":" + quote("active") +
+                ",\"winner\":null" +
+                ",\"player1\":" + quote(PLAYER1) +
+                ",\"player2\":" + quote(PLAYER2) +
+                ",\"lastMove\":" + 42 + "}";
+    }
+
+    private static String quote(String value) {
+        StringBuilder out = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') out.append('\\');
+            out.append(c);
+        }
+        return out.append('"').toString();
+    }
+
+    private static String naiveField(String json, String name) {
+        int at = json.indexOf("\"" + name + "\"");
+        int i = json.indexOf(':', at) + 1;
+        if (json.charAt(i) == '"') {
+            return json.substring(i + 1, json.indexOf('"', i + 1));
+        }
+        int end = i;
+        while (end < json.length() && ",}".indexOf(json.charAt(end)) < 0) end++;
+        return json.substring(i, end);
+    }
+}
@@ -0,0 +1,295 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+// Pull parser over UTF-8 bytes. Field names are matched in place against the names
+// the caller expects (selectName), and numbers are read straight from the bytes, so
+// a request like a move only allocates the strings it actually keeps. Malformed
+// input throws IllegalArgumentException.
+final class JsonReader {
+    static final int MAX_BODY_BYTES = 64 * 1024;
+
+    private final byte[] data;
+    private final int end;
+    private int pos;
+    private boolean escaped; // whether the last string scanned had escapes
+
+    JsonReader(byte[] data, int length) {
+        this.data = data;
+        this.end = length;
+    }
+
+    JsonReader(byte[] data) {
+        this(data, data.length);
+    }
+
+    JsonReader(String json) {
+        this(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Reads a whole request body, refusing anything over maxBytes
+    static JsonReader of(InputStream in, int maxBytes) throws IOException {
+        byte[] body = in.readNBytes(maxBytes + 1);
+        if (body.length > maxBytes) {
+            throw new IllegalArgumentException("Request body over " + maxBytes + " bytes");
+        }
+        return new JsonReader(body, body.length);
+    }
+
+    // Value of a top-level string, number or literal field, or null if it is missing
+    // or null. Convenient for small responses on the client side.
+    static String field(String json, String name) {
+        JsonReader reader = new JsonReader(json);
+        String[] names = {name};
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.selectName(names) == 0) {
+                return reader.peekNull() ? null : reader.nextScalar();
+            }
+            reader.skipValue();
+        }
+        return null;
+    }
+
+    static int intField(String json, String name, int fallback) {
+        String value = field(json, name);
+        if (value == null) return fallback;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Field " + name + " is not a number: " + value);
+        }
+    }
+
+    void beginObject() {
+        expect('{');
+    }
+
+    void endObject() {
+        expect('}');
+    }
+
+    void beginArray() {
+        expect('[');
+    }
+
+    void endArray() {
+        expect(']');
+    }
+
+    // True while the current object or array has more members; consumes the commas
+    boolean hasNext() {
+        int c = peek();
+        if (c == ',') {
+            pos++;
+            c = peek();
+        }
+        return c != '}' && c != ']';
+    }
+
+    // Reads a member name and returns its index in `names`, or -1 if it isn't there
+    int selectName(String[] names) {
+        skipSpace();
+        int start = stringStart();
+        int stop = stringEnd(start);
+        String decoded = escaped ? decode(start, stop) : null;
+        int match = -1;
+        for (int i = 0; i < names.length && match < 0; i++) {
+            if (decoded != null ? decoded.equals(names[i]) : asciiEquals(start, stop, names[i])) {
+                match = i;
+            }
+        }
+        pos = stop + 1;
+        expect(':');
+        return match;
+    }
+
+    String nextName() {
+        String name = nextString();
+        expect(':');
+        return name;
+    }
+
+    String nextString() {
+        skipSpace();
+        int start = stringStart();
+        int stop = stringEnd(start);
+        pos = stop + 1;
+        return decode(start, stop);
+    }
+
+    long nextLong() {
+        skipSpace();
+        int start = pos;
+        boolean negative = pos < end && data[pos] == '-';
+        if (negative) pos++;
+        long value = 0;
+        int digits = 0;
+        while (pos < end && data[pos] >= '0' && data[pos] <= '9') {
+            if (value > (Long.MAX_VALUE - 9) / 10) {
+                throw error("Number too large");
+            }
+            value = value * 10 + (data[pos++] - '0');
+            digits++;
+        }
+        if (digits == 0) {
+            pos = start;
+            throw error("Expected a number");
+        }
+        if (pos < end && (data[pos] == '.' || data[pos] == 'e' || data[pos] == 'E')) {
+            throw error("Expected an integer");
+        }
+        return negative ? -value : value;
+    }
+
+    int nextInt() {
+        long value = nextLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw error("Number out of range");
+        }
+        return (int) value;
+    }
+
+    boolean nextBoolean() {
+        if (literal("true")) return true;
+        if (literal("false")) return false;
+        throw error("Expected true or false");
+    }
+
+    boolean peekNull() {
+        skipSpace();
+        return end - pos >= 4 && data[pos] == 'n';
+    }
+
+    void nextNull() {
+        if (!literal("null")) throw error("Expected null");
+    }
+
+    void skipValue() {
+        int c = peek();
+        if (c == '"') {
+            pos = stringEnd(stringStart()) + 1;
+        } else if (c == '{' || c == '[') {
+            int nesting = 0;
+            do {
+                c = peek();
+                if (c == '"') {
+                    pos = stringEnd(stringStart()) + 1;
+                    continue;
+                }
+                if (c == '{' || c == '[') nesting++;
+                if (c == '}' || c == ']') nesting--;
+                pos++;
+            } while (nesting > 0 && pos < end);
+            if (nesting > 0) throw error("Unterminated value");
+        } else {
+            while (pos < end && ",}] \t\r\n".indexOf(data[pos]) < 0) pos++;
+        }
+    }
+
+    // Ensures nothing but whitespace follows the document
+    void endDocument() {
+        skipSpace();
+        if (pos != end) throw error("Trailing data");
+    }
+
+    private String nextScalar() {
+        if (peek() == '"') return nextString();
+        int start = pos;
+        skipValue();
+        return new String(data, start, pos - start, StandardCharsets.US_ASCII);
+    }
+
+    private boolean literal(String word) {
+        skipSpace();
+        if (end - pos < word.length()) return false;
+        for (int i = 0; i < word.length(); i++) {
+            if (data[pos + i] != word.charAt(i)) return false;
+        }
+        pos += word.length();
+        return true;
+    }
+
+    private int stringStart() {
+        if (pos >= end || data[pos] != '"') throw error("Expected a string");
+        return pos + 1;
+    }
+
+    // Index of the closing quote of the string starting at `start`
+    private int stringEnd(int start) {
+        escaped = false;
+        for (int i = start; i < end; i++) {
+            if (data[i] == '\\') {
+                escaped = true;
+                i++;
+            } else if (data[i] == '"') {
+                return i;
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    // Compares an unescaped string's bytes with an ASCII name
+    private boolean asciiEquals(int start, int stop, String name) {
+        if (stop - start != name.length()) return false;
+        for (int i = 0; i < name.length(); i++) {
+            if (data[start + i] != name.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    // The string between start and stop; only valid right after stringEnd(start)
+    private String decode(int start, int stop) {
+        if (!escaped) {
+            return new String(data, start, stop - start, StandardCharsets.UTF_8);
+        }
+
+        StringBuilder out = new StringBuilder(stop - start);
+        int runStart = start;
+        for (int i = start; i < stop; i++) {
+            if (data[i] != '\\') continue;
+            out.append(new String(data, runStart, i - runStart, StandardCharsets.UTF_8));
+            char e = (char) data[++i];
+            switch (e) {
+                case 'n': out.append('\n'); break;
+                case 'r': out.append('\r'); break;
+                case 't': out.append('\t'); break;
+                case 'b': out.append('\b'); break;
+                case 'f': out.append('\f'); break;
+                case 'u':
+                    if (i + 4 >= stop) throw error("Truncated escape");
+                    int cp = 0;
+                    for (int j = 1; j <= 4; j++) {
+                        int digit = Character.digit(data[i + j], 16);
+                        if (digit < 0) throw error("Bad escape");
+                        cp = cp * 16 + digit;
+                    }
+                    out.append((char) cp);
+                    i += 4;
+                    break;
+                default: out.append(e);
+            }
+            runStart = i + 1;
+        }
+        out.append(new String(data, runStart, stop - runStart, StandardCharsets.UTF_8));
+        return out.toString();
+    }
+
+    private void expect(char c) {
+        if (peek() != c) throw error("Expected '" + c + "'");
+        pos++;
+    }
+
+    private int peek() {
+        skipSpace();
+        return pos < end ? data[pos] : -1;
+    }
+
+    private void skipSpace() {
+        while (pos < end && (data[pos] == ' ' || data[pos] == '\n' || data[pos] == '\r' || data[pos] == '\t')) pos++;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Malformed JSON at offset " + pos + ": " + message);
+    }
+}
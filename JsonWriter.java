@@ -0,0 +1,326 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+// Streaming JSON writer that encodes straight to UTF-8 in its own buffer, with no
+// intermediate Strings. Commas are inserted automatically. Bound to an HttpExchange,
+// it sends a fixed Content-Length when the whole body fits in the buffer and
+// switches to chunked streaming once it doesn't.
+final class JsonWriter implements AutoCloseable {
+    private static final int MAX_DEPTH = 64;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[] buffer;
+    private int count;
+    private OutputStream out;                               // null until headers are sent
+    private final com.sun.net.httpserver.HttpExchange exchange;
+    private final int status;
+    private final OutputStream target;                      // used when not bound to an exchange
+    private long hasElements;                               // bit per open container
+    private int depth;
+    private boolean afterName;
+
+    JsonWriter(OutputStream target) {
+        this(target, null, 0, 512);
+    }
+
+    private JsonWriter(OutputStream target, com.sun.net.httpserver.HttpExchange exchange, int status, int bufferSize) {
+        this.target = target;
+        this.exchange = exchange;
+        this.status = status;
+        this.buffer = new byte[bufferSize];
+        this.out = target;
+    }
+
+    // Writer for a JSON response; close() completes the exchange
+    static JsonWriter forResponse(com.sun.net.httpserver.HttpExchange exchange, int status) {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        return new JsonWriter(null, exchange, status, 4096);
+    }
+
+    // Renders a small document to a String, e.g. for an event payload
+    static String toString(Consumer<JsonWriter> body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(0);
+        JsonWriter writer = new JsonWriter(bytes);
+        body.accept(writer);
+        if (bytes.size() == 0) {
+            // Small documents never leave the buffer
+            return new String(writer.buffer, 0, writer.count, StandardCharsets.UTF_8);
+        }
+        writer.flushBuffer();
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    JsonWriter beginObject() {
+        beforeValue();
+        push();
+        writeByte('{');
+        return this;
+    }
+
+    JsonWriter endObject() {
+        depth--;
+        writeByte('}');
+        return this;
+    }
+
+    JsonWriter beginArray() {
+        beforeValue();
+        push();
+        writeByte('[');
+        return this;
+    }
+
+    JsonWriter endArray() {
+        depth--;
+        writeByte(']');
+        return this;
+    }
+
+    JsonWriter name(String name) {
+        beforeValue();
+        writeString(name);
+        writeByte(':');
+        afterName = true;
+        return this;
+    }
+
+    JsonWriter value(String value) {
+        beforeValue();
+        if (value == null) {
+            writeAscii("null");
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    JsonWriter value(char value) {
+        beforeValue();
+        writeByte('"');
+        writeChar(value);
+        writeByte('"');
+        return this;
+    }
+
+    JsonWriter value(long value) {
+        beforeValue();
+        if (value == Long.MIN_VALUE) {
+            writeAscii("-9223372036854775808");
+            return this;
+        }
+        if (value < 0) {
+            writeByte('-');
+            value = -value;
+        }
+        ensure(20);
+        int start = count;
+        do {
+            buffer[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = count - 1; i < j; i++, j--) {
+            byte t = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = t;
+        }
+        return this;
+    }
+
+    JsonWriter value(double value) {
+        beforeValue();
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            writeAscii("null");
+        } else {
+            writeAscii(Double.toString(value));
+        }
+        return this;
+    }
+
+    JsonWriter value(boolean value) {
+        beforeValue();
+        writeAscii(value ? "true" : "false");
+        return this;
+    }
+
+    JsonWriter nullValue() {
+        beforeValue();
+        writeAscii("null");
+        return this;
+    }
+
+    // Copies an already-encoded JSON value
+    JsonWriter rawValue(String json) {
+        beforeValue();
+        for (int i = 0; i < json.length(); ) {
+            int cp = json.codePointAt(i);
+            writeCodePoint(cp);
+            i += Character.charCount(cp);
+        }
+        return this;
+    }
+
+    // Sends {"error": message} as the whole response
+    static void error(com.sun.net.httpserver.HttpExchange exchange, int status, String message) throws IOException {
+        try (JsonWriter writer = forResponse(exchange, status)) {
+            writer.beginObject().name("error").value(message == null ? "Internal error" : message).endObject();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (exchange == null) {
+            flushBuffer();
+            target.flush();
+            return;
+        }
+        if (out == null) {
+            // Everything fit in the buffer: send it with a Content-Length
+            exchange.sendResponseHeaders(status, count);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(buffer, 0, count);
+            }
+        } else {
+            flushBuffer();
+            out.close();
+        }
+    }
+
+    private void beforeValue() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            long bit = 1L << (depth - 1);
+            if ((hasElements & bit) != 0) {
+                writeByte(',');
+            }
+            hasElements |= bit;
+        }
+    }
+
+    private void push() {
+        if (depth == MAX_DEPTH) {
+            throw new IllegalStateException("JSON nested deeper than " + MAX_DEPTH);
+        }
+        hasElements &= ~(1L << depth++);
+    }
+
+    private void writeString(String s) {
+        int length = s.length();
+        if (length * 6 + 2 <= buffer.length - count) {
+            // Room for the worst case, so plain ASCII can skip the per-byte checks
+            byte[] buf = buffer;
+            int n = count;
+            buf[n++] = '"';
+            for (int i = 0; i < length; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                    buf[n++] = (byte) c;
+                } else {
+                    count = n;
+                    i = writeEscaped(s, i);
+                    n = count;
+                }
+            }
+            buf[n++] = '"';
+            count = n;
+            return;
+        }
+        writeByte('"');
+        for (int i = 0; i < length; i++) {
+            i = writeEscaped(s, i);
+        }
+        writeByte('"');
+    }
+
+    // Writes the char at `i`, escaped or UTF-8 encoded; returns the last index used
+    private int writeEscaped(String s, int i) {
+        char c = s.charAt(i);
+        switch (c) {
+            case '"': writeByte('\\'); writeByte('"'); break;
+            case '\\': writeByte('\\'); writeByte('\\'); break;
+            case '\n': writeByte('\\'); writeByte('n'); break;
+            case '\r': writeByte('\\'); writeByte('r'); break;
+            case '\t': writeByte('\\'); writeByte('t'); break;
+            default:
+                if (c < 0x20) {
+                    ensure(6);
+                    buffer[count++] = '\\';
+                    buffer[count++] = 'u';
+                    buffer[count++] = '0';
+                    buffer[count++] = '0';
+                    buffer[count++] = HEX[c >> 4];
+                    buffer[count++] = HEX[c & 0xF];
+                } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                        && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    writeCodePoint(Character.toCodePoint(c, s.charAt(++i)));
+                } else {
+                    writeChar(c);
+                }
+        }
+        return i;
+    }
+
+    // UTF-8 for one char outside a surrogate pair
+    private void writeChar(char c) {
+        if (c < 0x80) {
+            writeByte(c);
+        } else {
+            writeCodePoint(Character.isSurrogate(c) ? 0xFFFD : c); // Lone surrogate
+        }
+    }
+
+    private void writeCodePoint(int cp) {
+        ensure(4);
+        if (cp < 0x80) {
+            buffer[count++] = (byte) cp;
+        } else if (cp < 0x800) {
+            buffer[count++] = (byte) (0xC0 | (cp >> 6));
+            buffer[count++] = (byte) (0x80 | (cp & 0x3F));
+        } else if (cp < 0x10000) {
+            buffer[count++] = (byte) (0xE0 | (cp >> 12));
+            buffer[count++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            buffer[count++] = (byte) (0x80 | (cp & 0x3F));
+        } else {
+            buffer[count++] = (byte) (0xF0 | (cp >> 18));
+            buffer[count++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+            buffer[count++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            buffer[count++] = (byte) (0x80 | (cp & 0x3F));
+        }
+    }
+
+    private void writeAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            writeByte(s.charAt(i));
+        }
+    }
+
+    private void writeByte(int b) {
+        ensure(1);
+        buffer[count++] = (byte) b;
+    }
+
+    private void ensure(int bytes) {
+        if (count + bytes > buffer.length) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() {
+        try {
+            if (out == null) {
+                // Body outgrew the buffer: stream the rest chunked
+                exchange.sendResponseHeaders(status, 0);
+                out = exchange.getResponseBody();
+            }
+            out.write(buffer, 0, count);
+            count = 0;
+        } catch (IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        }
+    }
+}
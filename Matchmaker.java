@@ -0,0 +1,307 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+// Quick match: players who want a game take a ticket and wait in memory, in
+// lock-free queues bucketed by board and rating. A scheduler thread drains the
+// queues every tick (-Dtictactoe.matchmaking.tickMillis, default 250), pairs
+// neighbours in rating order and starts a game for each pair. How far apart two
+// ratings may be starts at -Dtictactoe.matchmaking.window and widens the longer
+// someone waits. Each ticket has an event stream under its id that carries its
+// state, so both players hear about their match as soon as it is made.
+final class Matchmaker {
+    static final String WAITING = "waiting";
+    static final String MATCHED = "matched";
+    static final String CANCELLED = "cancelled";
+    static final String EXPIRED = "expired";
+    // Claimed by the tick while its game is set up; shown as waiting
+    private static final String PAIRING = "pairing";
+
+    static final long TICK_MILLIS = Long.getLong("tictactoe.matchmaking.tickMillis", 250L);
+    static final int DEFAULT_RATING = 1500;
+    static final int BASE_WINDOW = Integer.getInteger("tictactoe.matchmaking.window", 100);
+    static final int MAX_QUEUED = Integer.getInteger("tictactoe.matchmaking.maxQueued", 100_000);
+    static final long MAX_WAIT_MILLIS = Long.getLong("tictactoe.matchmaking.maxWaitSeconds", 300L) * 1000;
+    private static final int WINDOW_GROWTH_PER_SECOND = 50;
+    private static final int MAX_WINDOW = 1000;
+    private static final int BUCKET_WIDTH = 100;
+    private static final int BUCKETS = 40;
+    // Ratings come from the client, so they are clamped to what the buckets cover
+    static final int MAX_RATING = BUCKETS * BUCKET_WIDTH - 1;
+    // How long a finished ticket can still be looked up or streamed
+    private static final long RETENTION_MILLIS = 60_000;
+
+    private static final Comparator<Ticket> BY_RATING =
+            Comparator.comparingInt((Ticket t) -> t.rating).thenComparingLong(t -> t.enqueuedMillis);
+
+    private static class Holder {
+        static final Matchmaker INSTANCE = new Matchmaker(GameSessionStore.shared()).start(TICK_MILLIS);
+    }
+
+    // One player's place in the queue
+    static final class Ticket {
+        final String ticketId = UUID.randomUUID().toString();
+        final String player;
+        final int rating;
+        final int size;
+        final int winLength;
+        final long enqueuedMillis = System.currentTimeMillis();
+        private final AtomicReference<String> status = new AtomicReference<>(WAITING);
+        private final GameChannel channel = GameChannel.open(ticketId);
+        private volatile long finishedMillis;
+        // Set once matched
+        private volatile String gameId;
+        private volatile String token;
+        private volatile char symbol;
+        private volatile String opponent;
+
+        Ticket(String player, int rating, int size, int winLength) {
+            this.player = player;
+            this.rating = rating;
+            this.size = size;
+            this.winLength = winLength;
+        }
+
+        String status() {
+            String current = status.get();
+            return current == PAIRING ? WAITING : current;
+        }
+
+        // What the ticket's "state" events carry. The seat token is only in them
+        // once matched, and only the ticket holder knows the ticket id.
+        void writeFields(JsonWriter out) {
+            String current = status();
+            out.name("ticketId").value(ticketId)
+                    .name("status").value(current)
+                    .name("player").value(player)
+                    .name("rating").value(rating)
+                    .name("size").value(size)
+                    .name("k").value(winLength);
+            if (current == MATCHED) {
+                out.name("gameId").value(gameId)
+                        .name("symbol").value(symbol)
+                        .name("token").value(token)
+                        .name("opponent").value(opponent);
+            }
+        }
+
+        private void publish() {
+            channel.publish("state", JsonWriter.toString(w -> {
+                w.beginObject();
+                writeFields(w);
+                w.endObject();
+            }));
+        }
+    }
+
+    // Waiting tickets for one board size and K
+    private final class Pool {
+        private final List<ConcurrentLinkedQueue<Ticket>> buckets = new ArrayList<>(BUCKETS);
+        private final List<Ticket> drained = new ArrayList<>(); // Only touched by the tick
+
+        Pool() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.add(new ConcurrentLinkedQueue<>());
+            }
+        }
+
+        void offer(Ticket ticket) {
+            buckets.get(ticket.rating / BUCKET_WIDTH).offer(ticket);
+        }
+
+        void tick(long now) {
+            for (ConcurrentLinkedQueue<Ticket> bucket : buckets) {
+                Ticket ticket;
+                while ((ticket = bucket.poll()) != null) {
+                    if (ticket.status() != WAITING) {
+                        continue; // Cancelled since it was queued
+                    }
+                    if (now - ticket.enqueuedMillis > MAX_WAIT_MILLIS) {
+                        leave(ticket, EXPIRED);
+                    } else {
+                        drained.add(ticket);
+                    }
+                }
+            }
+            drained.sort(BY_RATING);
+
+            int count = drained.size();
+            int i = 0;
+            while (i < count) {
+                Ticket a = drained.get(i);
+                if (i + 1 < count) {
+                    Ticket b = drained.get(i + 1);
+                    if (Math.abs(a.rating - b.rating) <= Math.max(window(a, now), window(b, now))
+                            && pair(a, b, now)) {
+                        i += 2;
+                        continue;
+                    }
+                }
+                if (a.status() == WAITING) {
+                    offer(a);
+                }
+                i++;
+            }
+            drained.clear();
+        }
+    }
+
+    private final GameSessionStore sessions;
+    private final ConcurrentHashMap<Long, Pool> pools = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Ticket> tickets = new ConcurrentHashMap<>();
+    // Tickets that left the queue, oldest first, until they are forgotten
+    private final ConcurrentLinkedQueue<Ticket> finished = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder matchedWaitMillis = new LongAdder();
+    private final LongAdder ticks = new LongAdder();
+
+    Matchmaker(GameSessionStore sessions) {
+        this.sessions = sessions;
+    }
+
+    static Matchmaker shared() {
+        return Holder.INSTANCE;
+    }
+
+    // Runs tick() every `periodMillis` on a daemon thread
+    Matchmaker start(long periodMillis) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "matchmaker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                tick();
+            } catch (RuntimeException e) {
+                System.err.println("Matchmaking tick failed: " + e);
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    // A rating from online results: the default, moved up to 400 points by the
+    // win/loss balance, less so while there are few games
+    static int ratingFor(int onlineWins, int onlineLosses) {
+        return DEFAULT_RATING + 400 * (onlineWins - onlineLosses) / (onlineWins + onlineLosses + 20);
+    }
+
+    Ticket enqueue(String player, int rating, int size, int winLength) {
+        BoardGeometry.of(size, winLength); // validates the combination
+        if (waiting.incrementAndGet() > MAX_QUEUED) {
+            waiting.decrementAndGet();
+            throw new IllegalStateException("Matchmaking queue is full");
+        }
+        String name = player == null || player.isBlank() ? "Guest" : player;
+        Ticket ticket = new Ticket(name, Math.max(0, Math.min(MAX_RATING, rating)), size, winLength);
+        tickets.put(ticket.ticketId, ticket);
+        ticket.publish();
+        pools.computeIfAbsent((long) size << 32 | winLength, key -> new Pool()).offer(ticket);
+        return ticket;
+    }
+
+    // The ticket with this id, or null if there is none (or it was forgotten)
+    Ticket get(String ticketId) {
+        return ticketId == null ? null : tickets.get(ticketId);
+    }
+
+    // Takes a waiting ticket out of the queue
+    void cancel(Ticket ticket) {
+        if (!leave(ticket, CANCELLED)) {
+            throw new IllegalStateException("Ticket is no longer in the queue");
+        }
+    }
+
+    // Pairs whoever can be paired; called by the scheduler
+    void tick() {
+        long now = System.currentTimeMillis();
+        ticks.increment();
+        for (Pool pool : pools.values()) {
+            pool.tick(now);
+        }
+        Ticket oldest;
+        while ((oldest = finished.peek()) != null && now - oldest.finishedMillis > RETENTION_MILLIS) {
+            finished.poll();
+            tickets.remove(oldest.ticketId, oldest);
+            oldest.channel.close();
+        }
+    }
+
+    int waiting() {
+        return waiting.get();
+    }
+
+    long matches() {
+        return matches.sum();
+    }
+
+    // Average time from joining the queue to being matched
+    double averageWaitMillis() {
+        long count = matches.sum();
+        return count == 0 ? 0.0 : (double) matchedWaitMillis.sum() / (2 * count);
+    }
+
+    long ticks() {
+        return ticks.sum();
+    }
+
+    private static int window(Ticket ticket, long now) {
+        long waited = (now - ticket.enqueuedMillis) / 1000;
+        return (int) Math.min(MAX_WINDOW, BASE_WINDOW + waited * WINDOW_GROWTH_PER_SECOND);
+    }
+
+    // Starts a game for the pair, unless one of them cancelled meanwhile. The one
+    // who waited longer plays X.
+    private boolean pair(Ticket a, Ticket b, long now) {
+        if (!a.status.compareAndSet(WAITING, PAIRING)) {
+            return false;
+        }
+        if (!b.status.compareAndSet(WAITING, PAIRING)) {
+            a.status.set(WAITING);
+            return false;
+        }
+        Ticket x = a.enqueuedMillis <= b.enqueuedMillis ? a : b;
+        Ticket o = x == a ? b : a;
+        GameSession session = sessions.create(x.player, x.size, x.winLength);
+        String oToken = sessions.join(session, o.player);
+        seat(x, session.gameId, 'X', session.creatorToken(), o.player, now);
+        seat(o, session.gameId, 'O', oToken, x.player, now);
+        matches.increment();
+        return true;
+    }
+
+    private void seat(Ticket ticket, String gameId, char symbol, String token, String opponent, long now) {
+        ticket.gameId = gameId;
+        ticket.symbol = symbol;
+        ticket.token = token;
+        ticket.opponent = opponent;
+        ticket.status.set(MATCHED);
+        matchedWaitMillis.add(now - ticket.enqueuedMillis);
+        retire(ticket, now);
+    }
+
+    private boolean leave(Ticket ticket, String status) {
+        if (!ticket.status.compareAndSet(WAITING, status)) {
+            return false;
+        }
+        retire(ticket, System.currentTimeMillis());
+        return true;
+    }
+
+    private void retire(Ticket ticket, long now) {
+        waiting.decrementAndGet();
+        ticket.finishedMillis = now;
+        ticket.publish();
+        finished.offer(ticket);
+    }
+}
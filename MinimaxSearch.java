@@ -0,0 +1,130 @@
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Hard-mode search: negamax with alpha-beta pruning over the bitboard, backed by a
+// transposition table keyed by the canonical (symmetry-folded) position.
+// The table is static so every game in the process - GUI or HTTP - shares it.
+final class MinimaxSearch {
+    static final int WIN_SCORE = 10;
+
+    // Center first, then corners, then edges
+    private static final int[] MOVE_ORDER = {4, 0, 2, 6, 8, 1, 3, 5, 7};
+
+    private static final int EXACT = 1;
+    private static final int LOWER_BOUND = 2;
+    private static final int UPPER_BOUND = 3;
+
+    // One int per canonical key: (flag << 8) | (score + 128), 0 means empty.
+    // Entries are written whole, so concurrent readers never see a torn value.
+    private static final AtomicIntegerArray TABLE = new AtomicIntegerArray(1 << (2 * GameState.CELLS));
+
+    private MinimaxSearch() {
+    }
+
+    // Best cell for `player` on the given board, or -1 if the game is over
+    static int bestMove(GameState state, char player) {
+        int me = state.mask(player);
+        int opp = state.mask(player == 'X' ? 'O' : 'X');
+        return bestMove(me, opp);
+    }
+
+    static int bestMove(int me, int opp) {
+        if (GameState.isWin(me) || GameState.isWin(opp)) {
+            return -1;
+        }
+        int empty = ~(me | opp) & GameState.FULL_MASK;
+        if (empty == 0) {
+            return -1;
+        }
+
+        int bestMove = -1;
+        int alpha = -WIN_SCORE - 1;
+        int beta = WIN_SCORE + 1;
+        for (int cell : MOVE_ORDER) {
+            int bit = 1 << cell;
+            if ((empty & bit) == 0) continue;
+
+            int score = -negamax(opp, me | bit, -beta, -alpha);
+            if (score > alpha || bestMove < 0) {
+                alpha = Math.max(alpha, score);
+                bestMove = cell;
+            }
+        }
+        return bestMove;
+    }
+
+    // Score of the position for the side to move (`me`); positive means a forced win
+    static int score(int me, int opp) {
+        return negamax(me, opp, -WIN_SCORE - 1, WIN_SCORE + 1);
+    }
+
+    private static int negamax(int me, int opp, int alpha, int beta) {
+        int plies = Integer.bitCount(me | opp);
+        if (GameState.isWin(opp)) {
+            return -(WIN_SCORE - plies); // Opponent just won; quicker wins weigh more
+        }
+        int empty = ~(me | opp) & GameState.FULL_MASK;
+        if (empty == 0) {
+            return 0;
+        }
+
+        int key = BoardSymmetry.canonicalKey(me, opp);
+        int entry = TABLE.get(key);
+        if (entry != 0) {
+            int flag = entry >>> 8;
+            int stored = (entry & 0xFF) - 128;
+            if (flag == EXACT) {
+                return stored;
+            } else if (flag == LOWER_BOUND) {
+                alpha = Math.max(alpha, stored);
+            } else {
+                beta = Math.min(beta, stored);
+            }
+            if (alpha >= beta) {
+                return stored;
+            }
+        }
+
+        // An immediate win can't be improved on
+        for (int cell : MOVE_ORDER) {
+            int bit = 1 << cell;
+            if ((empty & bit) != 0 && GameState.isWin(me | bit)) {
+                int score = WIN_SCORE - (plies + 1);
+                TABLE.set(key, (EXACT << 8) | (score + 128));
+                return score;
+            }
+        }
+
+        int alphaOrig = alpha;
+        int best = -WIN_SCORE - 1;
+        for (int cell : orderedMoves(opp, empty)) {
+            int bit = 1 << cell;
+            if ((empty & bit) == 0) continue;
+
+            int score = -negamax(opp, me | bit, -beta, -alpha);
+            if (score > best) {
+                best = score;
+            }
+            if (best > alpha) {
+                alpha = best;
+            }
+            if (alpha >= beta) {
+                break;
+            }
+        }
+
+        int flag = best <= alphaOrig ? UPPER_BOUND : best >= beta ? LOWER_BOUND : EXACT;
+        TABLE.set(key, (flag << 8) | (best + 128));
+        return best;
+    }
+
+    // Forced blocks first, otherwise the static center/corner/edge order
+    private static int[] orderedMoves(int opp, int empty) {
+        for (int cell : MOVE_ORDER) {
+            int bit = 1 << cell;
+            if ((empty & bit) != 0 && GameState.isWin(opp | bit)) {
+                return new int[]{cell};
+            }
+        }
+        return MOVE_ORDER;
+    }
+}
@@ -0,0 +1,237 @@
+// Monte Carlo tree search (UCT) for boards where exhaustive search can't finish.
+// Playouts run on the incremental GameState with place/clear and a preallocated move
+// stack, so they don't allocate. The tree is kept between calls: when the next
+// search starts from a position a move or two further on, the matching subtree
+// becomes the new root and its statistics are reused.
+final class MonteCarloSearch {
+    static final long DEFAULT_PLAYOUTS = Long.getLong("tictactoe.ai.mctsPlayouts", 0L); // 0 = time budget only
+    private static final double EXPLORATION = Math.sqrt(2);
+
+    private static final class Node {
+        final int move;      // cell played to reach this node, -1 for the root
+        final char player;   // who played it
+        Node[] children;
+        int childCount;
+        int[] untried;
+        int untriedCount;
+        int visits;
+        double wins;         // from `player`'s point of view, draws count half
+
+        Node(int move, char player) {
+            this.move = move;
+            this.player = player;
+        }
+    }
+
+    private GameState state;      // working board, always back at the root position between playouts
+    private Node root;
+    private int[] stack = new int[0];
+    private long seed = System.nanoTime() | 1;
+
+    // Best move for `player`; stops when the control's time budget runs out, it is
+    // cancelled, or `maxPlayouts` playouts have been run (0 = no playout limit).
+    // Result.nodes is the number of playouts, Result.score the win rate in per mille.
+    synchronized DeepeningSearch.Result search(GameState position, char player,
+                                               DeepeningSearch.Control control, long maxPlayouts) {
+        long start = System.nanoTime();
+        reuseTree(position, player);
+        if (root.untriedCount == 0 && root.childCount == 0) {
+            return new DeepeningSearch.Result(-1, 0, 0, 0, System.nanoTime() - start);
+        }
+
+        long playouts = 0;
+        Node[] path = new Node[state.cellCount() + 1];
+        while ((maxPlayouts <= 0 || playouts < maxPlayouts) && !((playouts & 63) == 0 && control.isStopped())) {
+            int placed = 0;
+            int depth = 0;
+            Node node = root;
+            path[depth++] = node;
+
+            // Selection
+            while (node.untriedCount == 0 && node.childCount > 0) {
+                node = selectChild(node);
+                state.place(node.move, node.player);
+                stack[placed++] = node.move;
+                path[depth++] = node;
+            }
+
+            // Expansion
+            if (node.untriedCount > 0 && !state.hasWinner()) {
+                int pick = nextInt(node.untriedCount);
+                int cell = node.untried[pick];
+                node.untried[pick] = node.untried[--node.untriedCount];
+                char mover = DeepeningSearch.opponent(node.player);
+                Node child = new Node(cell, mover);
+                addChild(node, child);
+                state.place(cell, mover);
+                stack[placed++] = cell;
+                initUntried(child);
+                node = child;
+                path[depth++] = node;
+            }
+
+            // Simulation
+            char toMove = DeepeningSearch.opponent(node.player);
+            while (!state.hasWinner() && !state.isFull()) {
+                int cell = state.findWinningCell(toMove);
+                if (cell < 0) cell = state.findWinningCell(DeepeningSearch.opponent(toMove));
+                if (cell < 0) cell = randomEmptyCell();
+                state.place(cell, toMove);
+                stack[placed++] = cell;
+                toMove = DeepeningSearch.opponent(toMove);
+            }
+            char winner = state.winner();
+
+            // Backpropagation
+            for (int i = 0; i < depth; i++) {
+                Node n = path[i];
+                n.visits++;
+                if (winner == ' ') {
+                    n.wins += 0.5;
+                } else if (winner == n.player) {
+                    n.wins += 1;
+                }
+            }
+
+            while (placed > 0) {
+                state.clear(stack[--placed]);
+            }
+            playouts++;
+            control.nodes.increment();
+        }
+
+        Node best = null;
+        for (int i = 0; i < root.childCount; i++) {
+            Node child = root.children[i];
+            if (best == null || child.visits > best.visits) {
+                best = child;
+            }
+        }
+        int score = best == null || best.visits == 0 ? 0 : (int) (1000 * best.wins / best.visits);
+        return new DeepeningSearch.Result(best == null ? -1 : best.move, score, treeDepth(best), playouts,
+                System.nanoTime() - start);
+    }
+
+    // Moves the root down to `position` if it is one or two moves past the old
+    // root; otherwise starts a fresh tree
+    private void reuseTree(GameState position, char player) {
+        if (state != null && root != null && state.size() == position.size()
+                && state.winLength() == position.winLength()) {
+            Node node = root;
+            int added = 0;
+            boolean matches = true;
+            for (int cell = 0; cell < position.cellCount() && matches; cell++) {
+                char before = state.get(cell);
+                char after = position.get(cell);
+                if (before != after) {
+                    matches = before == ' ' && ++added <= 2;
+                }
+            }
+            // Walk down: the move made from the root comes first, then the reply
+            while (matches && added > 0) {
+                Node next = null;
+                for (int i = 0; i < node.childCount; i++) {
+                    Node child = node.children[i];
+                    if (position.get(child.move) == child.player && state.isEmpty(child.move)) {
+                        next = child;
+                        break;
+                    }
+                }
+                if (next == null) {
+                    matches = false;
+                } else {
+                    state.place(next.move, next.player);
+                    node = next;
+                    added--;
+                }
+            }
+            if (matches && DeepeningSearch.opponent(node.player) == player) {
+                root = node;
+                return;
+            }
+        }
+
+        state = position.copy();
+        root = new Node(-1, DeepeningSearch.opponent(player));
+        initUntried(root);
+        if (stack.length < state.cellCount()) {
+            stack = new int[state.cellCount()];
+        }
+    }
+
+    private void initUntried(Node node) {
+        if (state.hasWinner() || state.isFull()) {
+            node.untried = new int[0];
+            node.untriedCount = 0;
+            return;
+        }
+        int[] moves = new int[state.cellCount()];
+        int count = state.candidateMoves(moves);
+        node.untried = moves;
+        node.untriedCount = count;
+    }
+
+    private static void addChild(Node parent, Node child) {
+        if (parent.children == null) {
+            parent.children = new Node[parent.untriedCount + 1];
+        }
+        parent.children[parent.childCount++] = child;
+    }
+
+    private static Node selectChild(Node node) {
+        double logVisits = Math.log(node.visits);
+        Node best = null;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < node.childCount; i++) {
+            Node child = node.children[i];
+            double value = child.wins / child.visits + EXPLORATION * Math.sqrt(logVisits / child.visits);
+            if (value > bestValue) {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    // A few random probes, then a scan from a random offset once the board is crowded
+    private int randomEmptyCell() {
+        int cells = state.cellCount();
+        for (int tries = 0; tries < 8; tries++) {
+            int cell = nextInt(cells);
+            if (state.isEmpty(cell)) {
+                return cell;
+            }
+        }
+        int offset = nextInt(cells);
+        for (int i = 0; i < cells; i++) {
+            int cell = (offset + i) % cells;
+            if (state.isEmpty(cell)) {
+                return cell;
+            }
+        }
+        throw new IllegalStateException("Board is full");
+    }
+
+    // xorshift64, so playouts don't touch a shared Random
+    private int nextInt(int bound) {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        return (int) ((seed >>> 1) % bound);
+    }
+
+    private static int treeDepth(Node node) {
+        int depth = 0;
+        while (node != null && node.childCount > 0) {
+            Node next = node.children[0];
+            for (int i = 1; i < node.childCount; i++) {
+                if (node.children[i].visits > next.visits) {
+                    next = node.children[i];
+                }
+            }
+            node = next;
+            depth++;
+        }
+        return depth;
+    }
+}
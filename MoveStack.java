@@ -0,0 +1,88 @@
+// Moves of the current game in play order, one byte (the cell index) per move, which
+// covers boards up to 15x15. Undone moves stay above the top until a new move is
+// pushed, so undo and redo are both O(1). X always makes the even-numbered moves.
+final class MoveStack {
+    private byte[] moves = new byte[16];
+    private int size;  // moves currently on the board
+    private int limit; // size plus the moves that can be redone
+
+    void push(int cell) {
+        if (cell < 0 || cell > 0xFF) {
+            throw new IllegalArgumentException("Cell " + cell + " does not fit in a byte");
+        }
+        if (size == moves.length) {
+            moves = java.util.Arrays.copyOf(moves, moves.length * 2);
+        }
+        moves[size++] = (byte) cell;
+        limit = size;
+    }
+
+    // Removes the last move and returns its cell, or -1 if there is none
+    int pop() {
+        return size == 0 ? -1 : moves[--size] & 0xFF;
+    }
+
+    // Re-applies the most recently undone move and returns its cell, or -1
+    int redo() {
+        return size == limit ? -1 : moves[size++] & 0xFF;
+    }
+
+    int peek() {
+        return size == 0 ? -1 : moves[size - 1] & 0xFF;
+    }
+
+    boolean canUndo() {
+        return size > 0;
+    }
+
+    boolean canRedo() {
+        return size < limit;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Move " + index + " of " + size);
+        }
+        return moves[index] & 0xFF;
+    }
+
+    void clear() {
+        size = 0;
+        limit = 0;
+    }
+
+    // Who made move number `index`
+    static char playerAt(int index) {
+        return index % 2 == 0 ? 'X' : 'O';
+    }
+
+    // Two hex digits per move, e.g. "0400080a"; this is what game_stats.moves stores
+    String encode() {
+        char[] out = new char[size * 2];
+        for (int i = 0; i < size; i++) {
+            out[2 * i] = Character.forDigit((moves[i] >> 4) & 0xF, 16);
+            out[2 * i + 1] = Character.forDigit(moves[i] & 0xF, 16);
+        }
+        return new String(out);
+    }
+
+    static MoveStack decode(String encoded) {
+        if (encoded == null || encoded.length() % 2 != 0) {
+            throw new IllegalArgumentException("Encoded moves must have two hex digits per move");
+        }
+        MoveStack stack = new MoveStack();
+        for (int i = 0; i < encoded.length(); i += 2) {
+            int hi = Character.digit(encoded.charAt(i), 16);
+            int lo = Character.digit(encoded.charAt(i + 1), 16);
+            if (hi < 0 || lo < 0) {
+                throw new IllegalArgumentException("Invalid move at offset " + i);
+            }
+            stack.push((hi << 4) | lo);
+        }
+        return stack;
+    }
+}
@@ -0,0 +1,238 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Parallel version of DeepeningSearch for large boards. At the root, and at any node
+// with enough depth left, the eldest child is searched first to set a bound and the
+// younger siblings are then forked across a ForkJoinPool ("young brothers wait").
+// All workers share the lock-free TranspositionTable.
+final class ParallelSearch {
+    static final int DEFAULT_THREADS = Integer.getInteger("tictactoe.ai.threads",
+            Runtime.getRuntime().availableProcessors());
+
+    // Nodes with less depth left than this are cheaper to search than to fork
+    private static final int SPLIT_DEPTH = 3;
+
+    private static class Holder {
+        static final ParallelSearch INSTANCE = new ParallelSearch(DEFAULT_THREADS, TranspositionTable.SHARED);
+    }
+
+    private final ForkJoinPool pool;
+    private final TranspositionTable table;
+
+    ParallelSearch(int threads, TranspositionTable table) {
+        this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        this.table = table;
+    }
+
+    static ParallelSearch shared() {
+        return Holder.INSTANCE;
+    }
+
+    int parallelism() {
+        return pool == null ? 1 : pool.getParallelism();
+    }
+
+    DeepeningSearch.Result search(GameState state, char player, long budgetMillis) {
+        return search(state, player, new DeepeningSearch.Control(budgetMillis, DeepeningSearch.MAX_DEPTH));
+    }
+
+    DeepeningSearch.Result search(GameState state, char player, DeepeningSearch.Control control) {
+        if (pool == null) {
+            return new DeepeningSearch(state.copy(), control, table, null).run(player);
+        }
+        DeepeningSearch root = new DeepeningSearch(state.copy(), control, table, this);
+        return pool.invoke(new RootTask(root, player, control));
+    }
+
+    boolean shouldSplit(int depth, int moveCount) {
+        return depth >= SPLIT_DEPTH && moveCount > 2 && ForkJoinTask.inForkJoinPool();
+    }
+
+    // Searches moves[from..count) of `parent` in parallel. Siblings share one alpha,
+    // so a sibling that starts late searches with the best bound found so far.
+    // Returns {best score, best move}.
+    int[] searchSiblings(DeepeningSearch parent, char player, int[] moves, int from, int count,
+                         int depth, int ply, int alpha, int beta) {
+        AtomicInteger sharedAlpha = new AtomicInteger(alpha);
+        List<SiblingTask> tasks = new ArrayList<>(count - from);
+        for (int i = from; i < count; i++) {
+            tasks.add(new SiblingTask(parent.fork(), moves[i], player, depth, ply, sharedAlpha, beta));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        int best = -DeepeningSearch.WIN_SCORE - 1;
+        int bestMove = -1;
+        for (SiblingTask task : tasks) {
+            int score = joinScore(task);
+            if (score > best) {
+                best = score;
+                bestMove = task.cell;
+            }
+        }
+        return new int[]{best, bestMove};
+    }
+
+    // join() may rethrow a copy of the worker's exception; keep the abort signal recognisable
+    private static int joinScore(SiblingTask task) {
+        try {
+            return task.join();
+        } catch (RuntimeException e) {
+            if (e instanceof DeepeningSearch.TimeUp || e.getCause() instanceof DeepeningSearch.TimeUp) {
+                throw new DeepeningSearch.TimeUp();
+            }
+            throw e;
+        }
+    }
+
+    private static final class SiblingTask extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+        private final DeepeningSearch worker;
+        private final int cell;
+        private final char player;
+        private final int depth, ply, beta;
+        private final AtomicInteger sharedAlpha;
+
+        SiblingTask(DeepeningSearch worker, int cell, char player, int depth, int ply,
+                    AtomicInteger sharedAlpha, int beta) {
+            this.worker = worker;
+            this.cell = cell;
+            this.player = player;
+            this.depth = depth;
+            this.ply = ply;
+            this.sharedAlpha = sharedAlpha;
+            this.beta = beta;
+        }
+
+        @Override
+        protected Integer compute() {
+            int alpha = sharedAlpha.get();
+            if (alpha >= beta) {
+                return -DeepeningSearch.WIN_SCORE - 1; // A sibling already caused the cutoff
+            }
+            try {
+                int score = worker.searchMove(cell, player, depth, ply, alpha, beta);
+                sharedAlpha.accumulateAndGet(score, Math::max);
+                return score;
+            } finally {
+                worker.flushNodes();
+            }
+        }
+    }
+
+    // Iterative deepening where each depth searches the best previous move first,
+    // then the remaining root moves in parallel
+    private final class RootTask extends RecursiveTask<DeepeningSearch.Result> {
+        private static final long serialVersionUID = 1L;
+        private final DeepeningSearch root;
+        private final char player;
+        private final DeepeningSearch.Control control;
+
+        RootTask(DeepeningSearch root, char player, DeepeningSearch.Control control) {
+            this.root = root;
+            this.player = player;
+            this.control = control;
+        }
+
+        @Override
+        protected DeepeningSearch.Result compute() {
+            long start = System.nanoTime();
+            GameState state = root.state;
+            int[] rootMoves = new int[state.cellCount()];
+            int rootCount = root.rootMoves(player, rootMoves);
+            if (rootCount == 0) {
+                return new DeepeningSearch.Result(-1, 0, 0, 0, System.nanoTime() - start);
+            }
+
+            int bestMove = rootMoves[0];
+            int bestScore = 0;
+            int completedDepth = 0;
+            int maxDepth = Math.min(control.maxDepth, state.cellCount() - state.moveCount());
+            try {
+                for (int depth = 1; depth <= maxDepth; depth++) {
+                    int alpha = root.searchMove(rootMoves[0], player, depth, 0,
+                            -DeepeningSearch.WIN_SCORE - 1, DeepeningSearch.WIN_SCORE + 1);
+                    int iterationBest = 0;
+
+                    if (rootCount > 1) {
+                        int[] split = searchSiblings(root, player, rootMoves, 1, rootCount, depth, 0,
+                                alpha, DeepeningSearch.WIN_SCORE + 1);
+                        if (split[0] > alpha) {
+                            alpha = split[0];
+                            for (int i = 1; i < rootCount; i++) {
+                                if (rootMoves[i] == split[1]) {
+                                    iterationBest = i;
+                                    break;
+                                }
+                            }
+                        }
+                    }
+
+                    DeepeningSearch.moveToFront(rootMoves, iterationBest);
+                    bestMove = rootMoves[0];
+                    bestScore = alpha;
+                    completedDepth = depth;
+
+                    if (DeepeningSearch.isDecisive(alpha)) {
+                        break;
+                    }
+                }
+            } catch (DeepeningSearch.TimeUp e) {
+                // Keep the result of the last completed depth
+            }
+            root.flushNodes();
+            return new DeepeningSearch.Result(bestMove, bestScore, completedDepth, control.nodes(),
+                    System.nanoTime() - start);
+        }
+    }
+
+    // Runs the same fixed-depth search single-threaded and on `threads` workers,
+    // each from an empty table, and reports the speedup used to size the pool
+    static String compareWithSingleThreaded(GameState state, char player, int depth, int threads) {
+        int bits = Integer.getInteger("tictactoe.ai.ttBits", 20);
+
+        ParallelSearch single = new ParallelSearch(1, new TranspositionTable(bits));
+        DeepeningSearch.Result serial = single.search(state, player, DeepeningSearch.Control.fixedDepth(depth));
+
+        ParallelSearch parallel = new ParallelSearch(threads, new TranspositionTable(bits));
+        DeepeningSearch.Result forked = parallel.search(state, player, DeepeningSearch.Control.fixedDepth(depth));
+        parallel.shutdown();
+
+        double serialMs = serial.elapsedNanos / 1e6;
+        double parallelMs = forked.elapsedNanos / 1e6;
+        return String.format("%dx%d board, depth %d%n" +
+                        "  1 thread : %8.1f ms, %,d nodes, move %d%n" +
+                        "  %d threads: %8.1f ms, %,d nodes, move %d%n" +
+                        "  speedup  : %.2fx (%.0f%% efficiency)",
+                state.size(), state.size(), depth,
+                serialMs, serial.nodes, serial.move,
+                threads, parallelMs, forked.nodes, forked.move,
+                serialMs / parallelMs, 100.0 * serialMs / parallelMs / threads);
+    }
+
+    void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    // java ParallelSearch [size] [depth] [threads]
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 15;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        // A few opening stones around the center so the search has something to chew on
+        GameState state = new GameState(size, BoardGeometry.defaultWinLength(size));
+        int center = size / 2;
+        state.play(state.index(center, center));
+        state.play(state.index(center, center + 1));
+        state.play(state.index(center + 1, center - 1));
+        state.play(state.index(center - 1, center));
+
+        System.out.println(compareWithSingleThreaded(state, state.toMove(), depth, threads));
+    }
+}
@@ -0,0 +1,192 @@
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.sql.DataSource;
+
+// Read-through cache of what the statistics window shows for a player: their
+// player_stats row and last ten games. Loads run on a small pool of its own, never
+// on the caller's thread, and callers get a CompletableFuture; concurrent requests
+// for one player share a load. Entries live for -Dtictactoe.db.statsCacheSeconds
+// (default 60) and are dropped as soon as GameResultWriter commits a game for the
+// player, so the next view reads the new totals.
+final class PlayerStatsCache implements AutoCloseable {
+    static final long TTL_NANOS = TimeUnit.SECONDS.toNanos(Long.getLong("tictactoe.db.statsCacheSeconds", 60L));
+    private static final int MAX_ENTRIES = 1000;
+    private static final int LOADER_THREADS = 2;
+
+    private static final String PLAYER_STATS_SQL = "SELECT total_games, wins, losses, draws, online_wins, " +
+            "online_losses, last_played FROM player_stats WHERE player_name = ?";
+    // Only columns in idx_game_stats_player_recent, so the index answers it alone
+    private static final String RECENT_GAMES_SQL = "SELECT game_mode, difficulty, result, opponent_name, play_date " +
+            "FROM game_stats WHERE player_name = ? ORDER BY play_date DESC LIMIT 10";
+
+    // One player's statistics; all zero for a player with no games yet
+    static final class PlayerStats {
+        final String playerName;
+        final boolean recorded; // whether player_stats has a row for them
+        final int totalGames;
+        final int wins;
+        final int losses;
+        final int draws;
+        final int onlineWins;
+        final int onlineLosses;
+        final Date lastPlayed;
+        final List<RecentGame> recentGames;
+
+        PlayerStats(String playerName, boolean recorded, int totalGames, int wins, int losses, int draws,
+                    int onlineWins, int onlineLosses, Date lastPlayed, List<RecentGame> recentGames) {
+            this.playerName = playerName;
+            this.recorded = recorded;
+            this.totalGames = totalGames;
+            this.wins = wins;
+            this.losses = losses;
+            this.draws = draws;
+            this.onlineWins = onlineWins;
+            this.onlineLosses = onlineLosses;
+            this.lastPlayed = lastPlayed;
+            this.recentGames = recentGames;
+        }
+    }
+
+    // One row of the recent games list
+    static final class RecentGame {
+        final String gameMode;
+        final String difficulty;
+        final String result;
+        final String opponentName;
+        final Timestamp playDate;
+
+        RecentGame(String gameMode, String difficulty, String result, String opponentName, Timestamp playDate) {
+            this.gameMode = gameMode;
+            this.difficulty = difficulty;
+            this.result = result;
+            this.opponentName = opponentName;
+            this.playDate = playDate;
+        }
+    }
+
+    private static final class Entry {
+        final CompletableFuture<PlayerStats> stats = new CompletableFuture<>();
+        final long loadedAtNanos = System.nanoTime();
+
+        boolean isFresh(long now) {
+            return now - loadedAtNanos < TTL_NANOS && !stats.isCompletedExceptionally();
+        }
+    }
+
+    private final DataSource dataSource;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ExecutorService loader = Executors.newFixedThreadPool(LOADER_THREADS, r -> {
+        Thread thread = new Thread(r, "player-stats-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    PlayerStatsCache(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    // The player's statistics, from the cache if fresh; never blocks
+    CompletableFuture<PlayerStats> get(String playerName) {
+        while (true) {
+            long now = System.nanoTime();
+            Entry current = entries.get(playerName);
+            if (current != null && current.isFresh(now)) {
+                hits.increment();
+                return current.stats;
+            }
+            Entry fresh = new Entry();
+            boolean claimed = current == null ? entries.putIfAbsent(playerName, fresh) == null
+                    : entries.replace(playerName, current, fresh);
+            if (claimed) {
+                misses.increment();
+                if (entries.size() > MAX_ENTRIES) {
+                    entries.values().removeIf(entry -> !entry.isFresh(now));
+                }
+                load(playerName, fresh);
+                return fresh.stats;
+            }
+            // Someone else started a load for this player meanwhile; use theirs
+        }
+    }
+
+    // Forgets the players' cached statistics; GameResultWriter calls this after
+    // each commit with the games it wrote
+    void invalidate(List<GameResultWriter.GameResult> written) {
+        for (GameResultWriter.GameResult result : written) {
+            entries.remove(result.playerName);
+        }
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    @Override
+    public void close() {
+        loader.shutdownNow();
+    }
+
+    private void load(String playerName, Entry entry) {
+        try {
+            loader.execute(() -> {
+                try {
+                    entry.stats.complete(query(playerName));
+                } catch (SQLException | RuntimeException e) {
+                    entries.remove(playerName, entry); // The next request tries again
+                    entry.stats.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            entries.remove(playerName, entry);
+            entry.stats.completeExceptionally(e);
+        }
+    }
+
+    private PlayerStats query(String playerName) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            List<RecentGame> recentGames = new ArrayList<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(RECENT_GAMES_SQL)) {
+                pstmt.setString(1, playerName);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        recentGames.add(new RecentGame(rs.getString("game_mode"), rs.getString("difficulty"),
+                                rs.getString("result"), rs.getString("opponent_name"), rs.getTimestamp("play_date")));
+                    }
+                }
+            }
+            recentGames = Collections.unmodifiableList(recentGames);
+
+            try (PreparedStatement pstmt = conn.prepareStatement(PLAYER_STATS_SQL)) {
+                pstmt.setString(1, playerName);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) {
+                        return new PlayerStats(playerName, false, 0, 0, 0, 0, 0, 0, null, recentGames);
+                    }
+                    return new PlayerStats(playerName, true, rs.getInt("total_games"), rs.getInt("wins"),
+                            rs.getInt("losses"), rs.getInt("draws"), rs.getInt("online_wins"),
+                            rs.getInt("online_losses"), rs.getDate("last_played"), recentGames);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,354 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Headless self-play for capacity planning and catching AI regressions. Every pair
+// of the given levels plays `games` games (one level as X, the other as O) across
+// all cores, each worker with its own AiPlayer. Reports games per second, a
+// win/draw/loss matrix and a per-level move latency histogram, and can stream
+// every game to a CSV or compact binary file.
+//
+//   java SelfPlay [games per pairing] [board size] [levels, e.g. 1,2,3] [threads] [out.csv|out.bin]
+//
+// Search levels think for -Dtictactoe.selfplay.budgetMillis per move (default 10).
+// Expert can be capped by playouts instead with -Dtictactoe.ai.mctsPlayouts.
+//
+// Binary records: x level, o level, result ('X', 'O' or 'D'), move count, then
+// one byte per move (the cell index), all unsigned bytes.
+public class SelfPlay {
+    static final long BUDGET_MILLIS = Long.getLong("tictactoe.selfplay.budgetMillis", 10L);
+    private static final int CLAIM = 64;            // games a worker takes at a time
+    private static final int FLUSH_BYTES = 64 * 1024;
+
+    private final int size;
+    private final int winLength;
+    private final int[] levels;
+    private final long gamesPerPairing;
+    private final int[][] pairings;                 // {x level, o level}
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicLong finished = new AtomicLong();
+    private final OutputStream out;                 // null when not recording
+    private final boolean csv;
+
+    // results[pairing] = {X wins, draws, O wins}, merged from the workers at the end
+    private final long[][] results;
+    private final LatencyHistogram[] latency;
+
+    SelfPlay(int size, int winLength, int[] levels, long gamesPerPairing, OutputStream out, boolean csv) {
+        this.size = size;
+        this.winLength = winLength;
+        this.levels = levels;
+        this.gamesPerPairing = gamesPerPairing;
+        this.out = out;
+        this.csv = csv;
+
+        List<int[]> pairs = new ArrayList<>();
+        for (int x : levels) {
+            for (int o : levels) {
+                pairs.add(new int[]{x, o});
+            }
+        }
+        this.pairings = pairs.toArray(new int[0][]);
+        this.results = new long[pairings.length][3];
+        this.latency = new LatencyHistogram[AiPlayer.EXPERT + 1];
+        for (int level : levels) {
+            latency[level] = new LatencyHistogram();
+        }
+    }
+
+    long totalGames() {
+        return gamesPerPairing * pairings.length;
+    }
+
+    // Plays every game on `threads` workers; returns the elapsed nanoseconds
+    long run(int threads) throws InterruptedException, IOException {
+        if (csv) {
+            byte[] header = "game,x_level,o_level,result,moves\n".getBytes(StandardCharsets.US_ASCII);
+            write(header, header.length);
+        }
+        Worker[] workers = new Worker[threads];
+        long start = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker();
+            workers[i].setName("self-play-" + i);
+            workers[i].start();
+        }
+        long lastReport = start;
+        for (Worker worker : workers) {
+            while (worker.isAlive()) {
+                worker.join(1000);
+                long now = System.nanoTime();
+                if (now - lastReport > 5_000_000_000L) {
+                    lastReport = now;
+                    long done = finished.get();
+                    System.err.printf("%,d / %,d games, %,.0f games/s%n", done, totalGames(), done / ((now - start) / 1e9));
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        for (Worker worker : workers) {
+            if (worker.failure != null) {
+                throw new IllegalStateException("Worker failed", worker.failure);
+            }
+            for (int p = 0; p < pairings.length; p++) {
+                for (int r = 0; r < 3; r++) {
+                    results[p][r] += worker.results[p][r];
+                }
+            }
+            for (int level : levels) {
+                latency[level].add(worker.latency[level]);
+            }
+        }
+        if (out != null) {
+            out.flush();
+        }
+        return elapsed;
+    }
+
+    String report(long elapsedNanos, int threads) {
+        StringBuilder text = new StringBuilder();
+        double seconds = elapsedNanos / 1e9;
+        text.append(String.format("%,d games on a %dx%d board (K=%d), %d threads, %.2f s: %,.0f games/s%n%n",
+                totalGames(), size, size, winLength, threads, seconds, totalGames() / seconds));
+
+        text.append("X wins / draws / O wins, X level down, O level across\n");
+        text.append(String.format("%-8s", ""));
+        for (int o : levels) {
+            text.append(String.format("%22s", AiPlayer.levelName(o)));
+        }
+        text.append('\n');
+        int p = 0;
+        for (int x : levels) {
+            text.append(String.format("%-8s", AiPlayer.levelName(x)));
+            for (int i = 0; i < levels.length; i++, p++) {
+                text.append(String.format("%22s", results[p][0] + " / " + results[p][1] + " / " + results[p][2]));
+            }
+            text.append('\n');
+        }
+
+        text.append(String.format("%nMove latency   %10s %10s %10s %10s %10s %12s%n",
+                "p50", "p90", "p99", "p99.9", "max", "moves"));
+        for (int level : levels) {
+            LatencyHistogram h = latency[level];
+            text.append(String.format("%-14s %10s %10s %10s %10s %10s %,12d%n", AiPlayer.levelName(level),
+                    format(h.percentile(0.50)), format(h.percentile(0.90)), format(h.percentile(0.99)),
+                    format(h.percentile(0.999)), format(h.max()), h.count()));
+        }
+        return text.toString();
+    }
+
+    private static String format(long nanos) {
+        if (nanos < 10_000) return nanos + " ns";
+        if (nanos < 10_000_000) return nanos / 1000 + " us";
+        return nanos / 1_000_000 + " ms";
+    }
+
+    private synchronized void write(byte[] bytes, int length) throws IOException {
+        out.write(bytes, 0, length);
+    }
+
+    private final class Worker extends Thread {
+        final AiPlayer ai = new AiPlayer();
+        final long[][] results = new long[pairings.length][3];
+        final LatencyHistogram[] latency = new LatencyHistogram[AiPlayer.EXPERT + 1];
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(FLUSH_BYTES + 1024);
+        final int[] moves = new int[size * size];
+        volatile Throwable failure;
+
+        Worker() {
+            setDaemon(true);
+            for (int level : levels) {
+                latency[level] = new LatencyHistogram();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                long total = totalGames();
+                long claimed;
+                while ((claimed = next.getAndAdd(CLAIM)) < total) {
+                    long end = Math.min(claimed + CLAIM, total);
+                    for (long game = claimed; game < end; game++) {
+                        play(game, (int) (game / gamesPerPairing));
+                    }
+                    finished.addAndGet(end - claimed);
+                    if (buffer.size() >= FLUSH_BYTES) {
+                        flush();
+                    }
+                }
+                flush();
+            } catch (Throwable t) {
+                failure = t;
+            }
+        }
+
+        private void play(long game, int pairing) throws IOException {
+            int xLevel = pairings[pairing][0];
+            int oLevel = pairings[pairing][1];
+            GameState state = new GameState(size, winLength);
+            int count = 0;
+            while (!state.isGameOver()) {
+                char player = state.toMove();
+                int level = player == 'X' ? xLevel : oLevel;
+                DeepeningSearch.Control control = new DeepeningSearch.Control(BUDGET_MILLIS, DeepeningSearch.MAX_DEPTH);
+                long start = System.nanoTime();
+                int cell = ai.bestMove(state, player, level, control);
+                latency[level].record(System.nanoTime() - start);
+                if (cell < 0) {
+                    throw new IllegalStateException(AiPlayer.levelName(level) + " found no move on\n" + state);
+                }
+                state.place(cell, player);
+                moves[count++] = cell;
+            }
+
+            char winner = state.winner();
+            results[pairing][winner == 'X' ? 0 : winner == 'O' ? 2 : 1]++;
+            if (out != null) {
+                record(game, xLevel, oLevel, winner == ' ' ? 'D' : winner, count);
+            }
+        }
+
+        private void record(long game, int xLevel, int oLevel, char result, int count) {
+            if (csv) {
+                StringBuilder line = new StringBuilder(32 + count * 4);
+                line.append(game).append(',').append(xLevel).append(',').append(oLevel).append(',')
+                        .append(result).append(',');
+                for (int i = 0; i < count; i++) {
+                    if (i > 0) line.append(' ');
+                    line.append(moves[i]);
+                }
+                line.append('\n');
+                byte[] bytes = line.toString().getBytes(StandardCharsets.US_ASCII);
+                buffer.write(bytes, 0, bytes.length);
+            } else {
+                buffer.write(xLevel);
+                buffer.write(oLevel);
+                buffer.write(result);
+                buffer.write(count);
+                for (int i = 0; i < count; i++) {
+                    buffer.write(moves[i]);
+                }
+            }
+        }
+
+        private void flush() throws IOException {
+            if (out != null && buffer.size() > 0) {
+                write(buffer.toByteArray(), buffer.size());
+                buffer.reset();
+            }
+        }
+    }
+
+    // Log-linear histogram: 16 linear buckets per power of two, so percentiles are
+    // within about 6% of the true value, in a fixed 1 KB of counters
+    static final class LatencyHistogram {
+        private static final int SUB_BITS = 4;
+        private static final int SUB = 1 << SUB_BITS;
+        private final long[] counts = new long[64 * SUB];
+        private long count;
+        private long max;
+
+        void record(long nanos) {
+            counts[bucket(nanos)]++;
+            count++;
+            if (nanos > max) max = nanos;
+        }
+
+        void add(LatencyHistogram other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            count += other.count;
+            max = Math.max(max, other.max);
+        }
+
+        long count() {
+            return count;
+        }
+
+        long max() {
+            return max;
+        }
+
+        // Upper bound of the bucket holding the given fraction of samples
+        long percentile(double fraction) {
+            long target = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target && seen > 0) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        private static int bucket(long nanos) {
+            if (nanos < SUB) return (int) Math.max(nanos, 0);
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);  // >= SUB_BITS
+            int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB - 1);
+            return (exponent - SUB_BITS + 1) * SUB + sub;
+        }
+
+        private static long upperBound(int bucket) {
+            if (bucket < SUB) return bucket;
+            int exponent = bucket / SUB + SUB_BITS - 1;
+            long sub = bucket % SUB;
+            return ((SUB + sub + 1) << (exponent - SUB_BITS)) - 1;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        long games = args.length > 0 ? Long.parseLong(args[0].replace("_", "")) : 10_000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        String levelList = args.length > 2 ? args[2] : "1,2,3";
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        String path = args.length > 4 ? args[4] : null;
+
+        String[] parts = levelList.split(",");
+        int[] levels = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            levels[i] = Integer.parseInt(parts[i].trim());
+            AiPlayer.checkLevel(levels[i]);
+        }
+        if (levels.length == 0 || games <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("Need at least one level, game and thread");
+        }
+        int winLength = Integer.getInteger("tictactoe.selfplay.k", BoardGeometry.defaultWinLength(size));
+        BoardGeometry.of(size, winLength); // validates the combination
+
+        if (size == 3 && contains(levels, AiPlayer.HARD)) {
+            SolvedTable.get(); // Load it before the clock starts
+        }
+
+        OutputStream out = path == null ? null
+                : new BufferedOutputStream(new FileOutputStream(path), 1 << 16);
+        try {
+            SelfPlay selfPlay = new SelfPlay(size, winLength, levels, games, out, path != null && path.endsWith(".csv"));
+            long elapsed = selfPlay.run(threads);
+            System.out.print(selfPlay.report(elapsed, threads));
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+        }
+        if (path != null) {
+            System.out.println("Games written to " + path);
+        }
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int v : values) {
+            if (v == value) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,95 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Expires online games nobody has touched for a while: waiting games after
+// -Dtictactoe.session.waitingTtlSeconds (default 1800), started ones after
+// -Dtictactoe.session.idleTtlSeconds (default 600). Moves, joins, board fetches and
+// event stream subscriptions count as activity. Sessions sit in a hashed timing
+// wheel of one-second slots under their deadline; a move doesn't touch the wheel,
+// the session's deadline is just checked again when its slot comes round, so
+// scheduling and each tick only cost as much as the sessions due then.
+final class SessionReaper {
+    static final long WAITING_TTL_MILLIS = Long.getLong("tictactoe.session.waitingTtlSeconds", 1800L) * 1000;
+    static final long IDLE_TTL_MILLIS = Long.getLong("tictactoe.session.idleTtlSeconds", 600L) * 1000;
+    static final long TICK_MILLIS = 1000;
+    private static final int SLOTS = 512; // One turn of the wheel is about 8.5 minutes
+
+    private final GameSessionStore sessions;
+    private final List<ConcurrentLinkedQueue<GameSession>> wheel = new ArrayList<>(SLOTS);
+    private final List<GameSession> notDue = new ArrayList<>(); // Only touched by the tick
+    // Next tick to process; ticks are milliseconds / TICK_MILLIS
+    private volatile long cursor = System.currentTimeMillis() / TICK_MILLIS;
+    private final LongAdder expired = new LongAdder();
+
+    SessionReaper(GameSessionStore sessions) {
+        this.sessions = sessions;
+        for (int i = 0; i < SLOTS; i++) {
+            wheel.add(new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    // Runs tick() every second on a daemon thread
+    SessionReaper start() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "session-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                tick(System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                System.err.println("Session reaper tick failed: " + e);
+            }
+        }, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    void schedule(GameSession session) {
+        long tick = Math.max(deadline(session) / TICK_MILLIS, cursor);
+        wheel.get((int) (tick % SLOTS)).offer(session);
+    }
+
+    // Expires the sessions whose deadline has passed, and puts the ones that have
+    // seen activity since they were scheduled back under their new deadline
+    void tick(long now) {
+        long target = now / TICK_MILLIS;
+        // After a stall, one turn of the wheel covers every slot
+        for (long tick = Math.max(cursor, target - SLOTS + 1); tick <= target; tick++) {
+            ConcurrentLinkedQueue<GameSession> slot = wheel.get((int) (tick % SLOTS));
+            GameSession session;
+            while ((session = slot.poll()) != null) {
+                String status = session.status();
+                if (!status.equals(GameSession.WAITING) && !status.equals(GameSession.ACTIVE)) {
+                    continue; // Finished or already expired
+                }
+                if (deadline(session) <= now) {
+                    if (sessions.expire(session)) {
+                        expired.increment();
+                    }
+                } else {
+                    notDue.add(session);
+                }
+            }
+        }
+        cursor = target + 1;
+        for (GameSession session : notDue) {
+            schedule(session);
+        }
+        notDue.clear();
+    }
+
+    long expired() {
+        return expired.sum();
+    }
+
+    private static long deadline(GameSession session) {
+        long ttl = session.status().equals(GameSession.WAITING) ? WAITING_TTL_MILLIS : IDLE_TTL_MILLIS;
+        return session.lastActivityMillis() + ttl;
+    }
+}
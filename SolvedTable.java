@@ -0,0 +1,179 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Perfect-play table for every reachable 3x3 position, so a Hard move is a single
+// array lookup. Positions are indexed in base 3 (empty = 0, X = 1, O = 2) and each
+// entry is one byte: best cell in the high nibble, score + 8 in the low nibble.
+// The table is generated once (at build time via main(), or on first boot) and
+// then memory-mapped from disk.
+final class SolvedTable {
+    static final int POSITIONS = 19683; // 3^9
+    static final String DEFAULT_PATH = "tictactoe-solved.bin";
+
+    private static final int MAGIC = 0x54545453; // "TTTS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+
+    private static final int NO_MOVE = 0xF;
+    private static final int UNREACHABLE = 0xFF;
+
+    // BASE3[mask] = sum of 3^cell over the set bits of a 9-bit mask
+    private static final int[] BASE3 = new int[1 << GameState.CELLS];
+
+    static {
+        for (int mask = 0; mask < BASE3.length; mask++) {
+            int value = 0, pow = 1;
+            for (int cell = 0; cell < GameState.CELLS; cell++) {
+                if ((mask & (1 << cell)) != 0) {
+                    value += pow;
+                }
+                pow *= 3;
+            }
+            BASE3[mask] = value;
+        }
+    }
+
+    private static class Holder {
+        static final SolvedTable INSTANCE = load(Paths.get(System.getProperty("tictactoe.solved.path", DEFAULT_PATH)));
+    }
+
+    private final ByteBuffer entries;
+    private final int reachable;
+
+    private SolvedTable(ByteBuffer entries) {
+        this.entries = entries;
+        int count = 0;
+        for (int i = 0; i < POSITIONS; i++) {
+            if ((entries.get(i) & 0xFF) != UNREACHABLE) count++;
+        }
+        this.reachable = count;
+    }
+
+    static SolvedTable get() {
+        return Holder.INSTANCE;
+    }
+
+    static int index(int xMask, int oMask) {
+        return BASE3[xMask] + 2 * BASE3[oMask];
+    }
+
+    // Best cell for `player`, or -1 if the game is already over
+    int bestMove(GameState state, char player) {
+        if (player != state.toMove()) {
+            // Not a position reachable with this side to move; search it instead
+            return MinimaxSearch.bestMove(state, player);
+        }
+        int entry = entries.get(index(state.xMask(), state.oMask())) & 0xFF;
+        if (entry == UNREACHABLE) {
+            return MinimaxSearch.bestMove(state, player);
+        }
+        int move = entry >>> 4;
+        return move == NO_MOVE ? -1 : move;
+    }
+
+    // Score for the side to move, or Integer.MIN_VALUE for an unreachable position
+    int score(GameState state) {
+        int entry = entries.get(index(state.xMask(), state.oMask())) & 0xFF;
+        return entry == UNREACHABLE ? Integer.MIN_VALUE : (entry & 0xF) - 8;
+    }
+
+    int reachablePositions() {
+        return reachable;
+    }
+
+    static SolvedTable load(Path path) {
+        try {
+            if (!isValid(path)) {
+                write(path, generate());
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, POSITIONS);
+                return new SolvedTable(mapped);
+            }
+        } catch (IOException e) {
+            System.err.println("Solved table unavailable on disk (" + e.getMessage() + "), keeping it in memory");
+            return new SolvedTable(ByteBuffer.wrap(generate()));
+        }
+    }
+
+    private static boolean isValid(Path path) throws IOException {
+        if (!Files.isRegularFile(path) || Files.size(path) != HEADER_SIZE + POSITIONS) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // read the full header
+            }
+            header.flip();
+            return header.remaining() == HEADER_SIZE && header.getInt() == MAGIC
+                    && header.getInt() == VERSION && header.getInt() == POSITIONS;
+        }
+    }
+
+    private static void write(Path path, byte[] table) throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, "tictactoe-solved", ".tmp");
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + POSITIONS);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(POSITIONS).put(table).flip();
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // Solves every position reachable from the empty board
+    static byte[] generate() {
+        byte[] table = new byte[POSITIONS];
+        java.util.Arrays.fill(table, (byte) UNREACHABLE);
+        solve(0, 0, table);
+        return table;
+    }
+
+    private static void solve(int xMask, int oMask, byte[] table) {
+        int index = index(xMask, oMask);
+        if ((table[index] & 0xFF) != UNREACHABLE) {
+            return;
+        }
+
+        boolean xToMove = Integer.bitCount(xMask) == Integer.bitCount(oMask);
+        int me = xToMove ? xMask : oMask;
+        int opp = xToMove ? oMask : xMask;
+        int move = MinimaxSearch.bestMove(me, opp);
+        int score = MinimaxSearch.score(me, opp);
+        table[index] = (byte) (((move < 0 ? NO_MOVE : move) << 4) | (score + 8));
+
+        if (move < 0) {
+            return;
+        }
+        int empty = ~(xMask | oMask) & GameState.FULL_MASK;
+        for (int cell = 0; cell < GameState.CELLS; cell++) {
+            int bit = 1 << cell;
+            if ((empty & bit) == 0) continue;
+            if (xToMove) {
+                solve(xMask | bit, oMask, table);
+            } else {
+                solve(xMask, oMask | bit, table);
+            }
+        }
+    }
+
+    // Build-time generator: java SolvedTable [output-path]
+    public static void main(String[] args) throws IOException {
+        Path path = Paths.get(args.length > 0 ? args[0] : DEFAULT_PATH);
+        write(path, generate());
+        System.out.println("Wrote " + load(path).reachablePositions() + " positions to " + path);
+    }
+}
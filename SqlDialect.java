@@ -0,0 +1,97 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+// The SQL that differs between the databases the game runs against: MySQL in
+// production, H2 or SQLite for local play. Picked from the JDBC metadata.
+enum SqlDialect {
+    MYSQL("INT AUTO_INCREMENT PRIMARY KEY",
+            "INSERT INTO player_stats (player_name, total_games, wins, losses, draws, online_wins, online_losses, " +
+            "last_played) VALUES (?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP) " +
+            "ON DUPLICATE KEY UPDATE total_games = total_games + VALUES(total_games), " +
+            "wins = wins + VALUES(wins), losses = losses + VALUES(losses), draws = draws + VALUES(draws), " +
+            "online_wins = online_wins + VALUES(online_wins), online_losses = online_losses + VALUES(online_losses), " +
+            "last_played = VALUES(last_played)",
+            "DELETE FROM online_games WHERE status IN ('waiting', 'active') AND created_at < ? " +
+            "ORDER BY created_at LIMIT ?"),
+
+    // Standard SQL MERGE
+    H2("INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY",
+            "MERGE INTO player_stats t USING (VALUES (CAST(? AS VARCHAR(50)), CAST(? AS INT), CAST(? AS INT), " +
+            "CAST(? AS INT), CAST(? AS INT), CAST(? AS INT), CAST(? AS INT))) " +
+            "AS s(player_name, total_games, wins, losses, draws, online_wins, online_losses) " +
+            "ON t.player_name = s.player_name " +
+            "WHEN MATCHED THEN UPDATE SET total_games = t.total_games + s.total_games, " +
+            "wins = t.wins + s.wins, losses = t.losses + s.losses, draws = t.draws + s.draws, " +
+            "online_wins = t.online_wins + s.online_wins, online_losses = t.online_losses + s.online_losses, " +
+            "last_played = CURRENT_TIMESTAMP " +
+            "WHEN NOT MATCHED THEN INSERT (player_name, total_games, wins, losses, draws, online_wins, " +
+            "online_losses, last_played) VALUES (s.player_name, s.total_games, s.wins, s.losses, s.draws, " +
+            "s.online_wins, s.online_losses, CURRENT_TIMESTAMP)",
+            "DELETE FROM online_games WHERE game_id IN (SELECT game_id FROM online_games " +
+            "WHERE status IN ('waiting', 'active') AND created_at < ? ORDER BY created_at FETCH FIRST ? ROWS ONLY)"),
+
+    // SQLite 3.24+
+    SQLITE("INTEGER PRIMARY KEY AUTOINCREMENT",
+            "INSERT INTO player_stats (player_name, total_games, wins, losses, draws, online_wins, online_losses, " +
+            "last_played) VALUES (?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP) " +
+            "ON CONFLICT (player_name) DO UPDATE SET total_games = player_stats.total_games + excluded.total_games, " +
+            "wins = player_stats.wins + excluded.wins, losses = player_stats.losses + excluded.losses, " +
+            "draws = player_stats.draws + excluded.draws, " +
+            "online_wins = player_stats.online_wins + excluded.online_wins, " +
+            "online_losses = player_stats.online_losses + excluded.online_losses, " +
+            "last_played = excluded.last_played",
+            "DELETE FROM online_games WHERE rowid IN (SELECT rowid FROM online_games " +
+            "WHERE status IN ('waiting', 'active') AND created_at < ? ORDER BY created_at LIMIT ?)"),
+
+    // Same upsert as SQLite
+    POSTGRESQL("SERIAL PRIMARY KEY", SQLITE.playerStatsUpsert,
+            "DELETE FROM online_games WHERE ctid IN (SELECT ctid FROM online_games " +
+            "WHERE status IN ('waiting', 'active') AND created_at < ? ORDER BY created_at LIMIT ?)");
+
+    // Column definition of an auto-increment primary key
+    final String identityColumn;
+
+    // Adds (player_name, total_games, wins, losses, draws, online_wins, online_losses)
+    // to the player's row, creating it if needed, in one statement
+    final String playerStatsUpsert;
+    // Deletes up to (limit) online_games rows left waiting or active since before
+    // (cutoff), oldest first; bind the cutoff with setTimestamp below
+    final String staleOnlineGamesDelete;
+
+    // SQLite keeps CURRENT_TIMESTAMP defaults as UTC text, and any text sorts after
+    // the epoch-millis integer its driver binds for a Timestamp
+    private static final DateTimeFormatter SQLITE_TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneOffset.UTC);
+
+    SqlDialect(String identityColumn, String playerStatsUpsert, String staleOnlineGamesDelete) {
+        this.identityColumn = identityColumn;
+        this.playerStatsUpsert = playerStatsUpsert;
+        this.staleOnlineGamesDelete = staleOnlineGamesDelete;
+    }
+
+    // Binds a point in time for comparison with a column defaulting to CURRENT_TIMESTAMP
+    void setTimestamp(PreparedStatement stmt, int index, long millis) throws SQLException {
+        if (this == SQLITE) {
+            stmt.setString(index, SQLITE_TIMESTAMP.format(Instant.ofEpochMilli(millis)));
+        } else {
+            stmt.setTimestamp(index, new Timestamp(millis));
+        }
+    }
+
+    static SqlDialect of(Connection conn) throws SQLException {
+        String product = conn.getMetaData().getDatabaseProductName().toLowerCase();
+        if (product.contains("h2")) {
+            return H2;
+        } else if (product.contains("sqlite")) {
+            return SQLITE;
+        } else if (product.contains("postgres")) {
+            return POSTGRESQL;
+        }
+        return MYSQL; // MySQL and MariaDB
+    }
+}
@@ -0,0 +1,85 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.sql.DataSource;
+
+// Deletes online_games rows left 'waiting' or 'active' for longer than
+// -Dtictactoe.db.onlineGamesRetentionHours (default 24): games abandoned by
+// clients that never finished them, which nothing else would ever clean up. Runs
+// every -Dtictactoe.db.reapIntervalMinutes (default 15) on its own thread. Rows go
+// in batches of -Dtictactoe.db.reapBatchSize (default 1000), oldest first, each
+// batch its own transaction with a pause after it, so a large backlog never holds
+// locks or a connection for long. The (status, created_at) index keeps each batch
+// from scanning the table.
+final class StaleRowReaper implements AutoCloseable {
+    static final long RETENTION_MILLIS = Long.getLong("tictactoe.db.onlineGamesRetentionHours", 24L) * 3_600_000;
+    static final long INTERVAL_MILLIS = Long.getLong("tictactoe.db.reapIntervalMinutes", 15L) * 60_000;
+    static final int BATCH_SIZE = Integer.getInteger("tictactoe.db.reapBatchSize", 1000);
+    private static final long BATCH_PAUSE_MILLIS = 50;
+
+    private final DataSource dataSource;
+    private final SqlDialect dialect;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "stale-row-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LongAdder deleted = new LongAdder();
+    private volatile boolean closed;
+
+    StaleRowReaper(DataSource dataSource, SqlDialect dialect) {
+        this.dataSource = dataSource;
+        this.dialect = dialect;
+    }
+
+    StaleRowReaper start() {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                reap(System.currentTimeMillis() - RETENTION_MILLIS);
+            } catch (SQLException e) {
+                System.err.println("Error deleting stale online games: " + e.getMessage());
+            }
+        }, 0, INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    // Deletes every stale row created before `cutoffMillis`; returns how many went
+    int reap(long cutoffMillis) throws SQLException {
+        int total = 0;
+        while (!closed) {
+            int count;
+            try (Connection conn = dataSource.getConnection();
+                 PreparedStatement delete = conn.prepareStatement(dialect.staleOnlineGamesDelete)) {
+                dialect.setTimestamp(delete, 1, cutoffMillis);
+                delete.setInt(2, BATCH_SIZE);
+                count = delete.executeUpdate();
+            }
+            total += count;
+            deleted.add(count);
+            if (count < BATCH_SIZE) {
+                break;
+            }
+            try {
+                Thread.sleep(BATCH_PAUSE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return total;
+    }
+
+    long deleted() {
+        return deleted.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdownNow();
+    }
+}
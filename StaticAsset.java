@@ -0,0 +1,116 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+
+// A fixed response body encoded once up front: the raw bytes, a gzipped copy and
+// an ETag for each. Serving it only picks a variant and writes it. A request whose
+// If-None-Match matches gets a bodiless 304.
+final class StaticAsset {
+    static final int MAX_AGE_SECONDS = Integer.getInteger("tictactoe.http.assetMaxAgeSeconds", 300);
+
+    private final String contentType;
+    private final byte[] raw;
+    private final byte[] gzipped;
+    private final String etag;
+    private final String gzipEtag;
+
+    StaticAsset(String contentType, String text) {
+        this.contentType = contentType;
+        this.raw = text.getBytes(StandardCharsets.UTF_8);
+        this.gzipped = gzip(raw);
+        String hash = sha256Prefix(raw);
+        // Each encoding is a different representation, so each gets its own tag
+        this.etag = "\"" + hash + "\"";
+        this.gzipEtag = "\"" + hash + "-gz\"";
+    }
+
+    void serve(com.sun.net.httpserver.HttpExchange exchange) throws IOException {
+        boolean useGzip = gzipped.length < raw.length && accepts(exchange, "gzip");
+        com.sun.net.httpserver.Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", contentType);
+        headers.set("Cache-Control", "public, max-age=" + MAX_AGE_SECONDS);
+        headers.set("Vary", "Accept-Encoding");
+        headers.set("ETag", useGzip ? gzipEtag : etag);
+
+        if (notModified(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        byte[] body = useGzip ? gzipped : raw;
+        if (useGzip) {
+            headers.set("Content-Encoding", "gzip");
+        }
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            headers.set("Content-Length", String.valueOf(body.length));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    // Either variant's tag counts: both describe the same content
+    private boolean notModified(String ifNoneMatch) {
+        return matches(ifNoneMatch, etag) || matches(ifNoneMatch, gzipEtag);
+    }
+
+    // Whether an If-None-Match header lists `etag` (compared weakly) or is "*"
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean accepts(com.sun.net.httpserver.HttpExchange exchange, String coding) {
+        String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (accept == null) return false;
+        for (String part : accept.split(",")) {
+            String[] params = part.trim().split(";");
+            if (params[0].trim().equalsIgnoreCase(coding)) {
+                return params.length < 2 || !params[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 3 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(data);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // In-memory streams don't fail
+        }
+        return out.toByteArray();
+    }
+
+    private static String sha256Prefix(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder hex = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                hex.append(Character.forDigit((digest[i] >> 4) & 0xF, 16))
+                        .append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is always available", e);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Where game statistics are kept, picked with -Dtictactoe.db.backend:
+//   mysql   the shared MySQL server (the default)
+//   h2      an embedded H2 database in a local file
+//   sqlite  an embedded SQLite database in a local file, in WAL mode
+// The embedded ones need only their driver jar on the classpath and write to disk
+// without a network round trip; the file is -Dtictactoe.db.file (default
+// ./tictactoe). -Dtictactoe.db.url, .user and .password override the defaults, and
+// a URL on its own is enough to pick the backend.
+enum StorageBackend {
+    MYSQL("com.mysql.cj.jdbc.Driver", "MySQL Connector/J (mysql-connector-j.jar)",
+            // rewriteBatchedStatements turns the batched game_stats inserts into one multi-row INSERT
+            "jdbc:mysql://localhost:3306/tictactoe_db?rewriteBatchedStatements=true",
+            "root", "password"), // Change this to your actual password
+
+    // H2's MVStore is append-only, so it needs no journal setting. The game closes
+    // the database itself after flushing queued results, not H2's shutdown hook.
+    H2("org.h2.Driver", "the H2 driver (h2.jar)",
+            "jdbc:h2:file:%s;DB_CLOSE_ON_EXIT=FALSE", "sa", "") {
+        @Override
+        String url(String file) {
+            return String.format(urlTemplate, new File(file).getAbsolutePath());
+        }
+    },
+
+    // The pattern matches the CURRENT_TIMESTAMP text SQLite stores, so getTimestamp() can read it back
+    SQLITE("org.sqlite.JDBC", "the SQLite driver (sqlite-jdbc.jar)",
+            "jdbc:sqlite:%s.db?date_string_format=yyyy-MM-dd HH:mm:ss", "", "",
+            // WAL lets readers run alongside the writer thread, and with it NORMAL
+            // sync is still crash-safe while skipping an fsync per commit
+            "PRAGMA journal_mode=WAL",
+            "PRAGMA synchronous=NORMAL",
+            "PRAGMA busy_timeout=5000") {
+        @Override
+        String url(String file) {
+            return String.format(urlTemplate, new File(file).getAbsolutePath());
+        }
+    };
+
+    static final String FILE = System.getProperty("tictactoe.db.file", "tictactoe");
+
+    final String driverClass;
+    final String driverName;
+    final String urlTemplate;
+    private final String defaultUser;
+    private final String defaultPassword;
+    // Run on every new connection before the pool hands it out
+    final List<String> connectionInit;
+
+    StorageBackend(String driverClass, String driverName, String urlTemplate,
+                   String defaultUser, String defaultPassword, String... connectionInit) {
+        this.driverClass = driverClass;
+        this.driverName = driverName;
+        this.urlTemplate = urlTemplate;
+        this.defaultUser = defaultUser;
+        this.defaultPassword = defaultPassword;
+        this.connectionInit = Collections.unmodifiableList(Arrays.asList(connectionInit));
+    }
+
+    static StorageBackend configured() {
+        String name = System.getProperty("tictactoe.db.backend");
+        if (name != null) {
+            for (StorageBackend backend : values()) {
+                if (backend.name().equalsIgnoreCase(name.trim())) {
+                    return backend;
+                }
+            }
+            throw new IllegalArgumentException("Unknown tictactoe.db.backend: " + name
+                    + " (expected mysql, h2 or sqlite)");
+        }
+        String url = System.getProperty("tictactoe.db.url", "");
+        if (url.startsWith("jdbc:h2:")) {
+            return H2;
+        } else if (url.startsWith("jdbc:sqlite:")) {
+            return SQLITE;
+        }
+        return MYSQL;
+    }
+
+    boolean isEmbedded() {
+        return this != MYSQL;
+    }
+
+    String url(String file) {
+        return urlTemplate;
+    }
+
+    String url() {
+        return System.getProperty("tictactoe.db.url", url(FILE));
+    }
+
+    String user() {
+        return System.getProperty("tictactoe.db.user", defaultUser);
+    }
+
+    String password() {
+        return System.getProperty("tictactoe.db.password", defaultPassword);
+    }
+
+    String displayName() {
+        return this == MYSQL ? "MySQL" : this == H2 ? "H2 (embedded)" : "SQLite (embedded)";
+    }
+}
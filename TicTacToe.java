@@ -1,11 +1,17 @@
 import javax.swing.*;
 import java.awt.*;
 import java.sql.*;
-import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class TicTacToe {
     private JFrame frame;
     private JButton[][] buttons;
+    private JPanel boardPanel;
+    private GameState game;
+    private final MoveStack moveStack = new MoveStack();
+    private int boardSize;
+    private int winLength;
     private String currentPlayer;
     private JLabel statusLabel;
     private JLabel xScoreLabel, oScoreLabel, drawLabel;
@@ -16,11 +22,23 @@ public class TicTacToe {
     private JRadioButton twoPlayerRadio;
     private JRadioButton vsComputerRadio;
     private ButtonGroup gameModeGroup;
-    private int difficultyLevel; // 1: Easy, 2: Medium, 3: Hard
+    private int difficultyLevel; // 1: Easy, 2: Medium, 3: Hard, 4: Expert (MCTS)
     private JComboBox<String> difficultyComboBox;
-
-    // JDBC Database connection variables
-    private Connection connection;
+    private JComboBox<String> boardSizeComboBox;
+    private final AiPlayer ai = new AiPlayer(); // own instance, so Expert reuses its tree between moves
+
+    // AI search runs off the EDT; aiGeneration invalidates results from cancelled searches
+    private final ExecutorService aiExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "ai-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private DeepeningSearch.Control aiControl;
+    private Timer thinkingTimer;
+    private int aiGeneration;
+
+    // Pooled JDBC access; null when running without a database
+    private GameDatabase database;
     private String playerName = "Player1"; // Default player name
 
     // For network/multiplayer features
@@ -28,6 +46,12 @@ public class TicTacToe {
     private String gameId;
     private String opponentName = "Opponent";
     private JButton onlineModeButton;
+    private JButton joinGameButton;
+    private JButton quickMatchButton;
+    private int onlineRating = Matchmaker.DEFAULT_RATING;
+    private String matchTicketId; // while queued for a quick match
+    private final String serverUrl = GameChannelClient.DEFAULT_SERVER;
+    private GameChannelClient channelClient; // event stream of the current online game
 
     public TicTacToe() {
         initializeGame();
@@ -36,7 +60,10 @@ public class TicTacToe {
     }
 
     private void initializeGame() {
-        buttons = new JButton[3][3];
+        boardSize = 3;
+        winLength = 3;
+        buttons = new JButton[boardSize][boardSize];
+        game = new GameState(boardSize, winLength);
         currentPlayer = "X";
         xWins = 0;
         oWins = 0;
@@ -46,30 +73,32 @@ public class TicTacToe {
         humanSymbol = "X";
         difficultyLevel = 2; // Default to medium
         isOnlineMode = false;
-        gameId = generateGameId();
+        gameId = GameIds.next();
     }
 
     private void initializeDatabase() {
+        StorageBackend backend = null;
         try {
-            // Load JDBC driver (for MySQL)
-            Class.forName("com.mysql.cj.jdbc.Driver");
-
-            // Establish connection
-            String url = "jdbc:mysql://localhost:3306/tictactoe_db";
-            String username = "root";
-            String password = "password"; // Change this to your actual password
+            backend = StorageBackend.configured();
 
-            connection = DriverManager.getConnection(url, username, password);
+            // Load JDBC driver
+            Class.forName(backend.driverClass);
 
-            // Create table if it doesn't exist
-            createTableIfNotExists();
+            // Establish connection and create the tables if they don't exist
+            database = GameDatabase.open(backend);
 
             // Load player statistics
             loadPlayerStats();
 
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(frame,
+                    e.getMessage() + "\n" +
+                            "Continuing without database functionality.",
+                    "Database Error",
+                    JOptionPane.WARNING_MESSAGE);
         } catch (ClassNotFoundException e) {
             JOptionPane.showMessageDialog(frame,
-                    "MySQL JDBC Driver not found. Please add the driver to your classpath.\n" +
+                    "JDBC driver not found. Please add " + backend.driverName + " to your classpath.\n" +
                             "Continuing without database functionality.",
                     "Database Error",
                     JOptionPane.WARNING_MESSAGE);
@@ -77,184 +106,48 @@ public class TicTacToe {
             JOptionPane.showMessageDialog(frame,
                     "Cannot connect to database. Please check your database connection.\n" +
                             "Error: " + e.getMessage() + "\n" +
+                            (backend.isEmbedded() ? "" : "To keep statistics in a local file instead, " +
+                                    "run with -Dtictactoe.db.backend=h2 or sqlite.\n") +
                             "Continuing without database functionality.",
                     "Database Connection Error",
                     JOptionPane.WARNING_MESSAGE);
         }
     }
 
-    private void createTableIfNotExists() throws SQLException {
-        String createTableSQL = "CREATE TABLE IF NOT EXISTS game_stats (" +
-                "id INT AUTO_INCREMENT PRIMARY KEY," +
-                "player_name VARCHAR(50) NOT NULL," +
-                "game_mode VARCHAR(20) NOT NULL," +
-                "difficulty VARCHAR(10)," +
-                "player_symbol CHAR(1)," +
-                "result VARCHAR(10) NOT NULL," +
-                "play_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                "game_id VARCHAR(20)," +
-                "opponent_name VARCHAR(50)," +
-                "moves TEXT" +
-                ")";
-
-        String createPlayerStatsSQL = "CREATE TABLE IF NOT EXISTS player_stats (" +
-                "id INT AUTO_INCREMENT PRIMARY KEY," +
-                "player_name VARCHAR(50) UNIQUE NOT NULL," +
-                "total_games INT DEFAULT 0," +
-                "wins INT DEFAULT 0," +
-                "losses INT DEFAULT 0," +
-                "draws INT DEFAULT 0," +
-                "online_wins INT DEFAULT 0," +
-                "online_losses INT DEFAULT 0," +
-                "last_played TIMESTAMP" +
-                ")";
-
-        String createOnlineGamesSQL = "CREATE TABLE IF NOT EXISTS online_games (" +
-                "game_id VARCHAR(20) PRIMARY KEY," +
-                "player1 VARCHAR(50) NOT NULL," +
-                "player2 VARCHAR(50)," +
-                "current_player CHAR(1) DEFAULT 'X'," +
-                "board_state VARCHAR(9) DEFAULT '         '," +
-                "status VARCHAR(20) DEFAULT 'waiting'," +
-                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                ")";
-
-        try (Statement stmt = connection.createStatement()) {
-            stmt.execute(createTableSQL);
-            stmt.execute(createPlayerStatsSQL);
-            stmt.execute(createOnlineGamesSQL);
-        }
-    }
-
+    // Off the EDT; the totals are applied when they arrive, unless the name has changed since
     private void loadPlayerStats() {
-        if (connection == null) return;
+        if (database == null) return;
 
-        try {
-            String sql = "SELECT * FROM player_stats WHERE player_name = ?";
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-                pstmt.setString(1, playerName);
-                ResultSet rs = pstmt.executeQuery();
-
-                if (rs.next()) {
-                    xWins = rs.getInt("wins");
-                    draws = rs.getInt("draws");
-                }
+        String name = playerName;
+        database.playerStats(name).whenComplete((stats, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                System.err.println("Error loading player stats: " + GameChannelClient.errorMessage(error));
+                return;
             }
-        } catch (SQLException e) {
-            System.err.println("Error loading player stats: " + e.getMessage());
-        }
-    }
-
-    private void saveGameResult(String gameMode, String result, String moves) {
-        if (connection == null) return;
+            if (!stats.recorded || !name.equals(playerName)) return;
 
-        try {
-            // Save to game_stats table
-            String gameStatsSQL = "INSERT INTO game_stats (player_name, game_mode, difficulty, player_symbol, result, game_id, opponent_name, moves) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-
-            String difficulty = vsComputer ?
-                    (difficultyLevel == 1 ? "Easy" : difficultyLevel == 2 ? "Medium" : "Hard") :
-                    (isOnlineMode ? "Online" : "Two Player");
-
-            String opponent = isOnlineMode ? opponentName : (vsComputer ? "AI" : "Local Player");
-
-            try (PreparedStatement pstmt = connection.prepareStatement(gameStatsSQL)) {
-                pstmt.setString(1, playerName);
-                pstmt.setString(2, gameMode);
-                pstmt.setString(3, difficulty);
-                pstmt.setString(4, humanSymbol);
-                pstmt.setString(5, result);
-                pstmt.setString(6, gameId);
-                pstmt.setString(7, opponent);
-                pstmt.setString(8, moves);
-                pstmt.executeUpdate();
+            xWins = stats.wins;
+            draws = stats.draws;
+            onlineRating = Matchmaker.ratingFor(stats.onlineWins, stats.onlineLosses);
+            if (xScoreLabel != null) {
+                updateScoreDisplay();
             }
-
-            // Update player_stats table
-            updatePlayerStats(result);
-
-        } catch (SQLException e) {
-            System.err.println("Error saving game result: " + e.getMessage());
-        }
+        }));
     }
 
-    private void updatePlayerStats(String result) {
-        if (connection == null) return;
+    // Queued for the background writer, which also updates player_stats
+    private void saveGameResult(String gameMode, String result, String moves) {
+        if (database == null) return;
 
-        try {
-            // Check if player exists
-            String checkSQL = "SELECT * FROM player_stats WHERE player_name = ?";
-            String updateSQL = "UPDATE player_stats SET total_games = total_games + 1, " +
-                    "wins = wins + ?, losses = losses + ?, draws = draws + ?, " +
-                    "online_wins = online_wins + ?, online_losses = online_losses + ?, " +
-                    "last_played = CURRENT_TIMESTAMP WHERE player_name = ?";
-            String insertSQL = "INSERT INTO player_stats (player_name, total_games, wins, losses, draws, online_wins, online_losses, last_played) " +
-                    "VALUES (?, 1, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)";
-
-            try (PreparedStatement checkStmt = connection.prepareStatement(checkSQL)) {
-                checkStmt.setString(1, playerName);
-                ResultSet rs = checkStmt.executeQuery();
-
-                int winsInc = 0, lossesInc = 0, drawsInc = 0;
-                int onlineWinsInc = 0, onlineLossesInc = 0;
-
-                if (isOnlineMode) {
-                    if (result.equals("Win")) {
-                        winsInc = 1;
-                        onlineWinsInc = 1;
-                    } else if (result.equals("Loss")) {
-                        lossesInc = 1;
-                        onlineLossesInc = 1;
-                    } else {
-                        drawsInc = 1;
-                    }
-                } else if (vsComputer) {
-                    if (result.equals("Win")) {
-                        winsInc = 1;
-                    } else if (result.equals("Loss")) {
-                        lossesInc = 1;
-                    } else {
-                        drawsInc = 1;
-                    }
-                } else {
-                    // For two-player mode, track differently
-                    if (result.equals("X Win")) {
-                        winsInc = 1;
-                    } else if (result.equals("O Win")) {
-                        lossesInc = 1;
-                    } else {
-                        drawsInc = 1;
-                    }
-                }
+        String difficulty = vsComputer ?
+                AiPlayer.levelName(difficultyLevel) :
+                (isOnlineMode ? "Online" : "Two Player");
 
-                if (rs.next()) {
-                    // Player exists, update
-                    try (PreparedStatement updateStmt = connection.prepareStatement(updateSQL)) {
-                        updateStmt.setInt(1, winsInc);
-                        updateStmt.setInt(2, lossesInc);
-                        updateStmt.setInt(3, drawsInc);
-                        updateStmt.setInt(4, onlineWinsInc);
-                        updateStmt.setInt(5, onlineLossesInc);
-                        updateStmt.setString(6, playerName);
-                        updateStmt.executeUpdate();
-                    }
-                } else {
-                    // Player doesn't exist, insert
-                    try (PreparedStatement insertStmt = connection.prepareStatement(insertSQL)) {
-                        insertStmt.setString(1, playerName);
-                        insertStmt.setInt(2, winsInc);
-                        insertStmt.setInt(3, lossesInc);
-                        insertStmt.setInt(4, drawsInc);
-                        insertStmt.setInt(5, onlineWinsInc);
-                        insertStmt.setInt(6, onlineLossesInc);
-                        insertStmt.executeUpdate();
-                    }
-                }
-            }
+        String opponent = isOnlineMode ? opponentName : (vsComputer ? "AI" : "Local Player");
 
-        } catch (SQLException e) {
-            System.err.println("Error updating player stats: " + e.getMessage());
+        if (!database.saveGameResult(new GameResultWriter.GameResult(playerName, gameMode, difficulty,
+                humanSymbol, result, gameId, opponent, moves))) {
+            System.err.println("Game result not saved: write queue is full");
         }
     }
 
@@ -274,20 +167,10 @@ public class TicTacToe {
         JPanel modePanel = createModePanel();
 
         // Game board
-        JPanel boardPanel = new JPanel(new GridLayout(3, 3, 5, 5));
+        boardPanel = new JPanel();
         boardPanel.setBorder(BorderFactory.createEmptyBorder(10, 20, 10, 20));
         boardPanel.setBackground(Color.DARK_GRAY);
-
-        for (int row = 0; row < 3; row++) {
-            for (int col = 0; col < 3; col++) {
-                buttons[row][col] = createGameButton();
-                final int finalRow = row;
-                final int finalCol = col;
-
-                buttons[row][col].addActionListener(e -> buttonClicked(finalRow, finalCol));
-                boardPanel.add(buttons[row][col]);
-            }
-        }
+        buildBoard();
 
         // Control panel
         JPanel controlPanel = createControlPanel();
@@ -304,6 +187,35 @@ public class TicTacToe {
         frame.setVisible(true);
     }
 
+    private void buildBoard() {
+        boardPanel.removeAll();
+        boardPanel.setLayout(new GridLayout(boardSize, boardSize, boardSize > 5 ? 1 : 5, boardSize > 5 ? 1 : 5));
+        buttons = new JButton[boardSize][boardSize];
+
+        for (int row = 0; row < boardSize; row++) {
+            for (int col = 0; col < boardSize; col++) {
+                buttons[row][col] = createGameButton();
+                final int finalRow = row;
+                final int finalCol = col;
+
+                buttons[row][col].addActionListener(e -> buttonClicked(finalRow, finalCol));
+                boardPanel.add(buttons[row][col]);
+            }
+        }
+        boardPanel.revalidate();
+        boardPanel.repaint();
+    }
+
+    private void setBoardSize(int size, int k) {
+        if (size == boardSize && k == winLength) return;
+
+        boardSize = size;
+        winLength = k;
+        game = new GameState(boardSize, winLength);
+        buildBoard();
+        resetGame();
+    }
+
     private JPanel createModePanel() {
         JPanel modePanel = new JPanel(new GridLayout(4, 1, 5, 5));
         modePanel.setBorder(BorderFactory.createTitledBorder("Game Settings"));
@@ -320,8 +232,7 @@ public class TicTacToe {
             String newName = nameField.getText().trim();
             if (!newName.isEmpty()) {
                 playerName = newName;
-                loadPlayerStats();
-                updateScoreDisplay();
+                loadPlayerStats(); // Updates the scores when it completes
                 JOptionPane.showMessageDialog(frame,
                         "Player name set to: " + playerName,
                         "Name Updated",
@@ -361,15 +272,28 @@ public class TicTacToe {
         JLabel difficultyLabel = new JLabel("AI Difficulty:");
         difficultyLabel.setFont(new Font("Arial", Font.BOLD, 12));
 
-        String[] difficulties = {"Easy", "Medium", "Hard"};
+        String[] difficulties = {"Easy", "Medium", "Hard", "Expert (MCTS)"};
         difficultyComboBox = new JComboBox<>(difficulties);
         difficultyComboBox.setSelectedIndex(1); // Medium
         difficultyComboBox.addActionListener(e -> {
             difficultyLevel = difficultyComboBox.getSelectedIndex() + 1;
         });
 
+        JLabel boardSizeLabel = new JLabel("Board:");
+        boardSizeLabel.setFont(new Font("Arial", Font.BOLD, 12));
+
+        String[] boardSizes = {"3x3", "4x4", "5x5", "15x15 (5 in a row)"};
+        int[] sizeValues = {3, 4, 5, 15};
+        boardSizeComboBox = new JComboBox<>(boardSizes);
+        boardSizeComboBox.addActionListener(e -> {
+            int size = sizeValues[boardSizeComboBox.getSelectedIndex()];
+            setBoardSize(size, BoardGeometry.defaultWinLength(size));
+        });
+
         difficultyPanel.add(difficultyLabel);
         difficultyPanel.add(difficultyComboBox);
+        difficultyPanel.add(boardSizeLabel);
+        difficultyPanel.add(boardSizeComboBox);
 
         // Online controls
         JPanel onlinePanel = new JPanel(new FlowLayout());
@@ -377,12 +301,17 @@ public class TicTacToe {
         onlineModeButton.setEnabled(false);
         onlineModeButton.addActionListener(e -> startOnlineGame());
 
-        JButton joinGameButton = new JButton("Join Game");
+        joinGameButton = new JButton("Join Game");
         joinGameButton.setEnabled(false);
         joinGameButton.addActionListener(e -> joinOnlineGame());
 
+        quickMatchButton = new JButton("Quick Match");
+        quickMatchButton.setEnabled(false);
+        quickMatchButton.addActionListener(e -> findQuickMatch());
+
         onlinePanel.add(onlineModeButton);
         onlinePanel.add(joinGameButton);
+        onlinePanel.add(quickMatchButton);
 
         modePanel.add(namePanel);
         modePanel.add(modeSelectionPanel);
@@ -394,7 +323,7 @@ public class TicTacToe {
 
     private JButton createGameButton() {
         JButton button = new JButton("");
-        button.setFont(new Font("Arial", Font.BOLD, 50));
+        button.setFont(new Font("Arial", Font.BOLD, Math.max(12, 150 / boardSize)));
         button.setFocusPainted(false);
         button.setBackground(Color.WHITE);
         button.setBorder(BorderFactory.createLineBorder(Color.GRAY, 2));
@@ -422,7 +351,7 @@ public class TicTacToe {
         scorePanel.add(drawLabel);
 
         // Button panel
-        JPanel buttonPanel = new JPanel(new GridLayout(1, 5, 10, 0));
+        JPanel buttonPanel = new JPanel(new GridLayout(1, 6, 10, 0));
 
         JButton resetButton = new JButton("New Game");
         resetButton.setFont(new Font("Arial", Font.BOLD, 14));
@@ -436,6 +365,12 @@ public class TicTacToe {
         undoButton.setForeground(Color.WHITE);
         undoButton.addActionListener(e -> undoMove());
 
+        JButton redoButton = new JButton("Redo");
+        redoButton.setFont(new Font("Arial", Font.BOLD, 14));
+        redoButton.setBackground(new Color(200, 150, 100));
+        redoButton.setForeground(Color.WHITE);
+        redoButton.addActionListener(e -> redoMove());
+
         JButton statsButton = new JButton("Stats");
         statsButton.setFont(new Font("Arial", Font.BOLD, 14));
         statsButton.setBackground(new Color(100, 150, 200));
@@ -456,6 +391,7 @@ public class TicTacToe {
 
         buttonPanel.add(resetButton);
         buttonPanel.add(undoButton);
+        buttonPanel.add(redoButton);
         buttonPanel.add(statsButton);
         buttonPanel.add(dbButton);
         buttonPanel.add(serverButton);
@@ -482,12 +418,16 @@ public class TicTacToe {
 
         if (onlineMode) {
             onlineModeButton.setEnabled(true);
+            joinGameButton.setEnabled(true);
+            quickMatchButton.setEnabled(true);
             difficultyComboBox.setEnabled(false);
             vsComputerRadio.setEnabled(false);
             twoPlayerRadio.setEnabled(false);
             statusLabel.setText("Online Mode - Create or Join a Game");
         } else if (vsComputer) {
             onlineModeButton.setEnabled(false);
+            joinGameButton.setEnabled(false);
+            quickMatchButton.setEnabled(false);
             difficultyComboBox.setEnabled(true);
             Object[] options = {"Play as X (First)", "Play as O (Second)"};
             int choice = JOptionPane.showOptionDialog(frame,
@@ -512,6 +452,8 @@ public class TicTacToe {
             updateStatusLabel();
         } else {
             onlineModeButton.setEnabled(false);
+            joinGameButton.setEnabled(false);
+            quickMatchButton.setEnabled(false);
             difficultyComboBox.setEnabled(false);
             currentPlayer = "X";
             updateStatusLabel();
@@ -519,9 +461,7 @@ public class TicTacToe {
     }
 
     private void buttonClicked(int row, int col) {
-        JButton button = buttons[row][col];
-
-        if (!button.getText().isEmpty() || checkGameOver()) {
+        if (!game.isEmpty(game.index(row, col)) || checkGameOver()) {
             return;
         }
 
@@ -538,67 +478,64 @@ public class TicTacToe {
     }
 
     private void makeMove(int row, int col) {
+        game.place(game.index(row, col), currentPlayer.charAt(0));
+        moveStack.push(game.index(row, col));
+        if (isOnlineMode) {
+            sendOnlineMove(game.index(row, col));
+        }
+
         JButton button = buttons[row][col];
         button.setText(currentPlayer);
         button.setForeground(currentPlayer.equals("X") ? new Color(200, 0, 0) : new Color(0, 0, 200));
 
+        if (!finishIfOver()) {
+            switchPlayer();
+
+            // If playing against computer and it's computer's turn
+            if (vsComputer && currentPlayer.equals(computerSymbol) && !checkGameOver()) {
+                SwingUtilities.invokeLater(this::makeComputerMove);
+            }
+        }
+    }
+
+    // Shows, counts and saves the result if the move just made by currentPlayer
+    // ended the game; false if play goes on
+    private boolean finishIfOver() {
         if (checkWin()) {
             highlightWinningCells();
             showWinMessage();
             updateScores();
 
-            // Save game result to database
+            // Save game result to database (online games are recorded by the server)
             String moves = getMovesHistory();
-            if (isOnlineMode) {
-                saveGameResult("Online", currentPlayer.equals(humanSymbol) ? "Win" : "Loss", moves);
-                updateOnlineGameStatus("completed");
-            } else if (vsComputer) {
+            if (vsComputer && !isOnlineMode) {
                 saveGameResult("VS AI", currentPlayer.equals(humanSymbol) ? "Win" : "Loss", moves);
-            } else {
+            } else if (!isOnlineMode) {
                 saveGameResult("Two Player", currentPlayer + " Win", moves);
             }
+            return true;
         } else if (checkDraw()) {
             showDrawMessage();
             draws++;
             updateScoreDisplay();
 
-            // Save draw result to database
-            String moves = getMovesHistory();
-            if (isOnlineMode) {
-                saveGameResult("Online", "Draw", moves);
-                updateOnlineGameStatus("draw");
-            } else {
-                saveGameResult(vsComputer ? "VS AI" : "Two Player", "Draw", moves);
-            }
-        } else {
-            switchPlayer();
-
-            // If playing against computer and it's computer's turn
-            if (vsComputer && currentPlayer.equals(computerSymbol) && !checkGameOver()) {
-                SwingUtilities.invokeLater(this::makeComputerMove);
-            }
-
-            // If online mode, update game state in database
-            if (isOnlineMode) {
-                updateOnlineGameState();
+            // Save draw result to database (online games are recorded by the server)
+            if (!isOnlineMode) {
+                saveGameResult(vsComputer ? "VS AI" : "Two Player", "Draw", getMovesHistory());
             }
+            return true;
         }
+        return false;
     }
 
+    // Cells in the order they were played, as stored in game_stats.moves
     private String getMovesHistory() {
-        StringBuilder moves = new StringBuilder();
-        for (int row = 0; row < 3; row++) {
-            for (int col = 0; col < 3; col++) {
-                String text = buttons[row][col].getText();
-                moves.append(text.isEmpty() ? "-" : text);
-            }
-        }
-        return moves.toString();
+        return moveStack.encode();
     }
 
     private void makeOnlineMove(int row, int col) {
-        // Check if it's player's turn by checking database
-        if (checkOnlineTurn()) {
+        // The turn comes from the last state the server pushed
+        if (channelClient != null && currentPlayer.equals(humanSymbol)) {
             makeMove(row, col);
         } else {
             JOptionPane.showMessageDialog(frame,
@@ -608,443 +545,413 @@ public class TicTacToe {
         }
     }
 
-    private boolean checkOnlineTurn() {
-        if (connection == null) return false;
-
-        try {
-            String sql = "SELECT current_player FROM online_games WHERE game_id = ?";
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-                pstmt.setString(1, gameId);
-                ResultSet rs = pstmt.executeQuery();
-                if (rs.next()) {
-                    return rs.getString("current_player").equals(humanSymbol);
+    // Sends our move to the game server; if it is rejected, the server's board wins
+    private void sendOnlineMove(int cell) {
+        GameChannelClient client = channelClient;
+        client.sendMove(cell).whenComplete((state, error) -> {
+            if (error == null) return;
+            SwingUtilities.invokeLater(() -> {
+                JOptionPane.showMessageDialog(frame,
+                        "Move rejected: " + GameChannelClient.errorMessage(error),
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE);
+                if (client == channelClient) {
+                    GameChannelClient.get(serverUrl, "/api/board/" + GameChannelClient.encode(gameId))
+                            .thenAccept(current -> SwingUtilities.invokeLater(() -> onGameEvent(client, "state", current)));
                 }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return false;
-    }
-
-    private void updateOnlineGameState() {
-        if (connection == null) return;
-
-        try {
-            String sql = "UPDATE online_games SET board_state = ?, current_player = ? WHERE game_id = ?";
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-                pstmt.setString(1, getMovesHistory());
-                pstmt.setString(2, currentPlayer);
-                pstmt.setString(3, gameId);
-                pstmt.executeUpdate();
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-    }
-
-    private void updateOnlineGameStatus(String status) {
-        if (connection == null) return;
-
-        try {
-            String sql = "UPDATE online_games SET status = ? WHERE game_id = ?";
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-                pstmt.setString(1, status);
-                pstmt.setString(2, gameId);
-                pstmt.executeUpdate();
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+            });
+        });
     }
 
+    // Games are hosted by the HTTP server (the Server button, or -Dtictactoe.server.url)
     private void startOnlineGame() {
-        if (connection == null) {
-            JOptionPane.showMessageDialog(frame,
-                    "Database not connected. Cannot start online game.",
-                    "Error",
-                    JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        gameId = generateGameId();
-
-        try {
-            String sql = "INSERT INTO online_games (game_id, player1, status) VALUES (?, ?, 'waiting')";
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-                pstmt.setString(1, gameId);
-                pstmt.setString(2, playerName);
-                pstmt.executeUpdate();
-            }
+        statusLabel.setText("Creating game on " + serverUrl + "...");
+        GameChannelClient.get(serverUrl, "/api/newgame?size=" + boardSize + "&k=" + winLength +
+                        "&player=" + GameChannelClient.encode(playerName))
+                .whenComplete((created, error) -> SwingUtilities.invokeLater(() -> {
+                    if (error != null) {
+                        statusLabel.setText("Online Mode - Create or Join a Game");
+                        JOptionPane.showMessageDialog(frame,
+                                "Error creating game: " + GameChannelClient.errorMessage(error) + "\n" +
+                                        "Is the game server running at " + serverUrl + "?",
+                                "Error",
+                                JOptionPane.ERROR_MESSAGE);
+                        return;
+                    }
 
-            humanSymbol = "X";
-            opponentName = "Waiting for opponent...";
-            statusLabel.setText("Game ID: " + gameId + " - Waiting for opponent...");
+                    resetGame();
+                    gameId = JsonReader.field(created, "gameId");
 
-            // Start polling for opponent
-            startGamePolling();
+                    isOnlineMode = true;
+                    humanSymbol = "X";
+                    opponentName = "Waiting for opponent...";
+                    statusLabel.setText("Join code: " + JsonReader.field(created, "joinCode") +
+                            " - Waiting for opponent...");
 
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(frame,
-                    "Error creating game: " + e.getMessage(),
-                    "Error",
-                    JOptionPane.ERROR_MESSAGE);
-        }
+                    // The opponent joining and their moves arrive as events
+                    subscribeToGame(JsonReader.field(created, "token"));
+                }));
     }
 
     private void joinOnlineGame() {
         String inputGameId = JOptionPane.showInputDialog(frame,
-                "Enter Game ID to join:",
+                "Enter the join code (or game ID) to join:",
                 "Join Game",
                 JOptionPane.QUESTION_MESSAGE);
 
         if (inputGameId != null && !inputGameId.trim().isEmpty()) {
-            gameId = inputGameId.trim();
-
-            if (connection == null) {
-                JOptionPane.showMessageDialog(frame,
-                        "Database not connected.",
-                        "Error",
-                        JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-
-            try {
-                String sql = "SELECT * FROM online_games WHERE game_id = ? AND status = 'waiting'";
-                try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-                    pstmt.setString(1, gameId);
-                    ResultSet rs = pstmt.executeQuery();
-
-                    if (rs.next()) {
-                        // Join the game
-                        String updateSql = "UPDATE online_games SET player2 = ?, status = 'active' WHERE game_id = ?";
-                        try (PreparedStatement updateStmt = connection.prepareStatement(updateSql)) {
-                            updateStmt.setString(1, playerName);
-                            updateStmt.setString(2, gameId);
-                            updateStmt.executeUpdate();
+            String joinId = inputGameId.trim();
+
+            GameChannelClient.get(serverUrl, "/api/joingame/" + GameChannelClient.encode(joinId) +
+                            "?player=" + GameChannelClient.encode(playerName))
+                    .whenComplete((state, error) -> SwingUtilities.invokeLater(() -> {
+                        if (error != null) {
+                            JOptionPane.showMessageDialog(frame,
+                                    "Error joining game: " + GameChannelClient.errorMessage(error),
+                                    "Error",
+                                    JOptionPane.ERROR_MESSAGE);
+                            return;
                         }
 
-                        opponentName = rs.getString("player1");
+                        setBoardSize(JsonReader.intField(state, "size", 3), JsonReader.intField(state, "k", 3));
+                        resetGame();
+                        gameId = JsonReader.field(state, "gameId");
+
+                        isOnlineMode = true;
+                        opponentName = JsonReader.field(state, "player1");
                         humanSymbol = "O";
                         currentPlayer = "X"; // First player starts
 
                         statusLabel.setText("Playing against: " + opponentName);
-                        startGamePolling();
+                        subscribeToGame(JsonReader.field(state, "token"));
+                    }));
+        }
+    }
 
-                    } else {
+    // Queues on the server for an opponent of similar rating; the ticket's event
+    // stream says when a game has been made for us
+    private void findQuickMatch() {
+        statusLabel.setText("Looking for an opponent on " + serverUrl + "...");
+        GameChannelClient.get(serverUrl, "/api/matchmaking/join?size=" + boardSize + "&k=" + winLength +
+                        "&rating=" + onlineRating + "&player=" + GameChannelClient.encode(playerName))
+                .whenComplete((ticket, error) -> SwingUtilities.invokeLater(() -> {
+                    if (error != null) {
+                        statusLabel.setText("Online Mode - Create or Join a Game");
                         JOptionPane.showMessageDialog(frame,
-                                "Game not found or already started.",
+                                "Error finding a match: " + GameChannelClient.errorMessage(error) + "\n" +
+                                        "Is the game server running at " + serverUrl + "?",
                                 "Error",
                                 JOptionPane.ERROR_MESSAGE);
+                        return;
                     }
-                }
-            } catch (SQLException e) {
-                JOptionPane.showMessageDialog(frame,
-                        "Error joining game: " + e.getMessage(),
-                        "Error",
-                        JOptionPane.ERROR_MESSAGE);
-            }
-        }
-    }
-
-    private void startGamePolling() {
-        Timer pollingTimer = new Timer(2000, e -> pollGameUpdates());
-        pollingTimer.start();
-    }
-
-    private void pollGameUpdates() {
-        if (connection == null || gameId == null) return;
 
-        try {
-            String sql = "SELECT * FROM online_games WHERE game_id = ?";
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-                pstmt.setString(1, gameId);
-                ResultSet rs = pstmt.executeQuery();
-
-                if (rs.next()) {
-                    String status = rs.getString("status");
-                    String boardState = rs.getString("board_state");
-                    String currentPlayerFromDB = rs.getString("current_player");
-
-                    if (status.equals("active")) {
-                        // Update board
-                        updateBoardFromState(boardState);
-                        currentPlayer = currentPlayerFromDB;
-                        updateStatusLabel();
-                    } else if (status.equals("completed") || status.equals("draw")) {
-                        // Game ended
-                        JOptionPane.showMessageDialog(frame,
-                                "Game Over!",
-                                "Game Ended",
-                                JOptionPane.INFORMATION_MESSAGE);
-                        resetGame();
-                    }
-                }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+                    resetGame();
+                    isOnlineMode = true;
+                    statusLabel.setText("Looking for an opponent...");
+                    matchTicketId = JsonReader.field(ticket, "ticketId");
+                    GameChannelClient[] client = new GameChannelClient[1];
+                    client[0] = new GameChannelClient(serverUrl, matchTicketId, null,
+                            (event, data) -> onMatchmakingEvent(client[0], event, data));
+                    channelClient = client[0];
+                }));
     }
 
-    private void updateBoardFromState(String boardState) {
-        if (boardState == null || boardState.length() != 9) return;
+    // Runs on the EDT for every event on our matchmaking ticket
+    private void onMatchmakingEvent(GameChannelClient source, String event, String data) {
+        if (source != channelClient) return; // A ticket we have given up
 
-        for (int i = 0; i < 9; i++) {
-            int row = i / 3;
-            int col = i % 3;
-            char symbol = boardState.charAt(i);
+        if (event.equals("state")) {
+            String status = JsonReader.field(data, "status");
+            if (status.equals(Matchmaker.MATCHED)) {
+                matchTicketId = null;
+                resetGame();
+                gameId = JsonReader.field(data, "gameId");
 
-            if (symbol != ' ') {
-                buttons[row][col].setText(String.valueOf(symbol));
-                buttons[row][col].setForeground(symbol == 'X' ?
-                        new Color(200, 0, 0) : new Color(0, 0, 200));
+                isOnlineMode = true;
+                humanSymbol = JsonReader.field(data, "symbol");
+                opponentName = JsonReader.field(data, "opponent");
+                currentPlayer = "X";
+                statusLabel.setText("Playing against: " + opponentName);
+                subscribeToGame(JsonReader.field(data, "token"));
+            } else if (!status.equals(Matchmaker.WAITING)) {
+                matchTicketId = null;
+                closeGameChannel();
+                statusLabel.setText("No opponent found - Create or Join a Game");
             }
+        } else if (event.equals("error")) {
+            matchTicketId = null;
+            closeGameChannel();
+            statusLabel.setText("Online Mode - Create or Join a Game");
         }
     }
 
-    private void makeComputerMove() {
-        if (checkGameOver()) return;
-
-        int[] move = findBestMove();
-        if (move != null) {
-            Timer timer = new Timer(600, e -> {
-                makeMove(move[0], move[1]);
-            });
-            timer.setRepeats(false);
-            timer.start();
-        }
+    private void subscribeToGame(String token) {
+        closeGameChannel();
+        GameChannelClient[] client = new GameChannelClient[1];
+        client[0] = new GameChannelClient(serverUrl, gameId, token,
+                (event, data) -> onGameEvent(client[0], event, data));
+        channelClient = client[0];
     }
 
-    private int[] findBestMove() {
-        // Hard AI - Minimax algorithm
-        if (difficultyLevel == 3) {
-            return findBestMoveMinimax();
+    private void closeGameChannel() {
+        if (matchTicketId != null) {
+            // Leave the queue so nobody gets matched with us
+            GameChannelClient.get(serverUrl, "/api/matchmaking/cancel/" + GameChannelClient.encode(matchTicketId));
+            matchTicketId = null;
         }
-        // Medium AI - Strategic moves
-        else if (difficultyLevel == 2) {
-            return findBestMoveMedium();
-        }
-        // Easy AI - Random moves with some strategy
-        else {
-            return findBestMoveEasy();
+        if (channelClient != null) {
+            channelClient.close();
+            channelClient = null;
         }
     }
 
-    private int[] findBestMoveMinimax() {
-        int bestScore = Integer.MIN_VALUE;
-        int[] bestMove = null;
-
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                if (buttons[i][j].getText().isEmpty()) {
-                    buttons[i][j].setText(computerSymbol);
-                    int score = minimax(0, false);
-                    buttons[i][j].setText("");
-
-                    if (score > bestScore) {
-                        bestScore = score;
-                        bestMove = new int[]{i, j};
-                    }
+    // Runs on the EDT for every event the server pushes for the current game
+    private void onGameEvent(GameChannelClient source, String event, String data) {
+        if (source != channelClient) return; // From a game we have left
+
+        switch (event) {
+            case "joined":
+                opponentName = JsonReader.field(data, "player");
+                statusLabel.setText("Playing against: " + opponentName);
+                break;
+            case "state":
+                String status = JsonReader.field(data, "status");
+                if (checkGameOver()) {
+                    return; // We made the final move and have already shown the result
                 }
-            }
+                updateBoardFromState(JsonReader.field(data, "board"));
+                currentPlayer = JsonReader.field(data, "currentPlayer");
+                if (status.equals("active")) {
+                    updateStatusLabel();
+                } else if (status.equals("completed") || status.equals("draw")) {
+                    // Game ended
+                    JOptionPane.showMessageDialog(frame,
+                            "Game Over!",
+                            "Game Ended",
+                            JOptionPane.INFORMATION_MESSAGE);
+                    resetGame();
+                } else if (status.equals("expired")) {
+                    JOptionPane.showMessageDialog(frame,
+                            "The game was closed after a long time without moves.",
+                            "Game Ended",
+                            JOptionPane.INFORMATION_MESSAGE);
+                    resetGame();
+                }
+                break;
+            case "error":
+                JOptionPane.showMessageDialog(frame,
+                        "Lost the game stream: " + JsonReader.field(data, "error"),
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE);
+                closeGameChannel();
+                break;
+            default:
+                break;
         }
-        return bestMove;
     }
 
-    private int minimax(int depth, boolean isMaximizing) {
-        if (checkWin()) {
-            if (isMaximizing) {
-                return -10 + depth; // Human wins
-            } else {
-                return 10 - depth; // Computer wins
-            }
-        }
-        if (checkDraw()) {
-            return 0;
-        }
+    private void updateBoardFromState(String boardState) {
+        if (boardState == null || boardState.length() != boardSize * boardSize) return;
 
-        if (isMaximizing) {
-            int bestScore = Integer.MIN_VALUE;
-            for (int i = 0; i < 3; i++) {
-                for (int j = 0; j < 3; j++) {
-                    if (buttons[i][j].getText().isEmpty()) {
-                        buttons[i][j].setText(computerSymbol);
-                        int score = minimax(depth + 1, false);
-                        buttons[i][j].setText("");
-                        bestScore = Math.max(score, bestScore);
-                    }
-                }
-            }
-            return bestScore;
-        } else {
-            int bestScore = Integer.MAX_VALUE;
-            for (int i = 0; i < 3; i++) {
-                for (int j = 0; j < 3; j++) {
-                    if (buttons[i][j].getText().isEmpty()) {
-                        buttons[i][j].setText(humanSymbol);
-                        int score = minimax(depth + 1, true);
-                        buttons[i][j].setText("");
-                        bestScore = Math.min(score, bestScore);
-                    }
-                }
-            }
-            return bestScore;
+        GameState previous = game;
+        try {
+            game = GameState.fromBoardString(boardState, winLength);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ignoring invalid board state: " + e.getMessage());
+            return;
         }
-    }
 
-    private int[] findBestMoveMedium() {
-        // Try to win
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                if (buttons[i][j].getText().isEmpty()) {
-                    buttons[i][j].setText(computerSymbol);
-                    if (checkWin()) {
-                        buttons[i][j].setText("");
-                        return new int[]{i, j};
-                    }
-                    buttons[i][j].setText("");
-                }
+        // Record the opponent's new stones in the move list
+        for (int i = 0; i < game.cellCount(); i++) {
+            if (previous.isEmpty(i) && !game.isEmpty(i)) {
+                moveStack.push(i);
             }
         }
 
-        // Block human from winning
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                if (buttons[i][j].getText().isEmpty()) {
-                    buttons[i][j].setText(humanSymbol);
-                    if (checkWin()) {
-                        buttons[i][j].setText("");
-                        return new int[]{i, j};
-                    }
-                    buttons[i][j].setText("");
-                }
-            }
+        for (int i = 0; i < game.cellCount(); i++) {
+            int row = i / boardSize;
+            int col = i % boardSize;
+            char symbol = game.get(i);
+
+            // Also clears a stone the server turned down
+            buttons[row][col].setText(symbol == ' ' ? "" : String.valueOf(symbol));
+            buttons[row][col].setForeground(symbol == 'X' ?
+                    new Color(200, 0, 0) : new Color(0, 0, 200));
         }
+    }
 
-        // Strategic moves
-        int[][] priorities = {
-                {1, 1}, // Center
-                {0, 0}, {0, 2}, {2, 0}, {2, 2}, // Corners
-                {0, 1}, {1, 0}, {1, 2}, {2, 1}  // Edges
-        };
+    private void makeComputerMove() {
+        if (checkGameOver()) return;
 
-        for (int[] pos : priorities) {
-            if (buttons[pos[0]][pos[1]].getText().isEmpty()) {
-                return pos;
+        // Search a snapshot on the AI thread so the EDT stays responsive
+        cancelComputerMove();
+        int generation = aiGeneration;
+        GameState snapshot = game.copy();
+        char computer = computerSymbol.charAt(0);
+        DeepeningSearch.Control control = new DeepeningSearch.Control(DeepeningSearch.DEFAULT_BUDGET_MILLIS,
+                DeepeningSearch.MAX_DEPTH);
+        long started = System.nanoTime();
+
+        aiControl = control;
+        thinkingTimer = new Timer(100, e -> showThinking(control, started));
+        thinkingTimer.start();
+
+        aiExecutor.submit(() -> {
+            int cell;
+            try {
+                cell = findBestMove(snapshot, computer, control);
+            } catch (RuntimeException e) {
+                System.err.println("AI search failed: " + e.getMessage());
+                cell = -1;
             }
-        }
 
-        return getRandomMove();
-    }
+            int move = cell;
+            SwingUtilities.invokeLater(() -> {
+                // A newer game, undo or search has superseded this one
+                if (generation != aiGeneration) return;
 
-    private int[] findBestMoveEasy() {
-        Random rand = new Random();
+                stopThinking();
+                if (move >= 0) {
+                    makeMove(move / boardSize, move % boardSize);
+                }
+            });
+        });
+    }
 
-        // 30% chance to make a random move
-        if (rand.nextInt(100) < 30) {
-            return getRandomMove();
+    private void cancelComputerMove() {
+        aiGeneration++;
+        if (aiControl != null) {
+            aiControl.cancel();
+            aiControl = null;
         }
+        stopThinking();
+    }
 
-        // Otherwise use medium strategy
-        return findBestMoveMedium();
+    private void stopThinking() {
+        if (thinkingTimer != null) {
+            thinkingTimer.stop();
+            thinkingTimer = null;
+        }
     }
 
-    private int[] getRandomMove() {
-        Random rand = new Random();
-        java.util.List<int[]> emptyCells = new java.util.ArrayList<>();
+    private void showThinking(DeepeningSearch.Control control, long started) {
+        double seconds = (System.nanoTime() - started) / 1e9;
+        statusLabel.setText(String.format("Computer's turn (%s) - Thinking... %.1fs, %,d nodes",
+                computerSymbol, seconds, control.nodes()));
+    }
 
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                if (buttons[i][j].getText().isEmpty()) {
-                    emptyCells.add(new int[]{i, j});
-                }
-            }
-        }
+    // Runs on the AI thread against a private copy of the board; returns a cell or -1
+    private int findBestMove(GameState board, char computer, DeepeningSearch.Control control) {
+        return ai.bestMove(board, computer, difficultyLevel, control);
+    }
 
-        if (!emptyCells.isEmpty()) {
-            return emptyCells.get(rand.nextInt(emptyCells.size()));
-        }
-        return null;
+    private int[] toRowCol(int cell) {
+        return new int[]{cell / boardSize, cell % boardSize};
     }
 
     private void undoMove() {
-        // Simple undo - just reset the game
-        if (vsComputer || isOnlineMode) {
+        if (isOnlineMode) {
             JOptionPane.showMessageDialog(frame,
-                    "Undo not available in AI or Online mode. Starting new game.",
+                    "Undo is not available in online games.",
                     "Undo",
                     JOptionPane.INFORMATION_MESSAGE);
+            return;
         }
-        resetGame();
-    }
+        // The result is already counted and saved; taking moves back would count it twice
+        if (checkGameOver()) {
+            JOptionPane.showMessageDialog(frame,
+                    "This game is over and its result has been recorded.\nStart a new game to play again.",
+                    "Undo",
+                    JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        if (!moveStack.canUndo()) return;
 
-    private boolean checkWin() {
-        String[][] board = getBoardState();
+        cancelComputerMove();
+        undoLastMove();
 
-        for (int i = 0; i < 3; i++) {
-            if (checkLine(board[i][0], board[i][1], board[i][2]) ||
-                    checkLine(board[0][i], board[1][i], board[2][i])) {
-                return true;
-            }
+        // Against the AI, rewind its reply too so it's the player's turn again
+        while (vsComputer && currentPlayer.equals(computerSymbol) && moveStack.canUndo()) {
+            undoLastMove();
         }
 
-        return checkLine(board[0][0], board[1][1], board[2][2]) ||
-                checkLine(board[0][2], board[1][1], board[2][0]);
+        refreshBoard();
+        updateStatusLabel();
+        if (vsComputer && currentPlayer.equals(computerSymbol)) {
+            SwingUtilities.invokeLater(this::makeComputerMove);
+        }
     }
 
-    private boolean checkLine(String a, String b, String c) {
-        return !a.isEmpty() && a.equals(b) && b.equals(c);
-    }
+    private void redoMove() {
+        if (isOnlineMode || checkGameOver() || !moveStack.canRedo()) return;
 
-    private boolean checkDraw() {
-        for (JButton[] row : buttons) {
-            for (JButton button : row) {
-                if (button.getText().isEmpty()) {
-                    return false;
-                }
-            }
+        cancelComputerMove();
+        redoNextMove();
+
+        // Replay the AI's recorded reply rather than searching again
+        if (vsComputer && currentPlayer.equals(computerSymbol) && moveStack.canRedo() && !checkGameOver()) {
+            redoNextMove();
         }
-        return true;
-    }
 
-    private boolean checkGameOver() {
-        return checkWin() || checkDraw();
+        refreshBoard();
+        // A redo that finishes the game ends it the way playing the move would have
+        if (checkGameOver()) {
+            currentPlayer = String.valueOf(MoveStack.playerAt(moveStack.size() - 1));
+            finishIfOver();
+            return;
+        }
+        updateStatusLabel();
+        if (vsComputer && currentPlayer.equals(computerSymbol) && !checkGameOver()) {
+            SwingUtilities.invokeLater(this::makeComputerMove);
+        }
     }
 
-    private String[][] getBoardState() {
-        String[][] board = new String[3][3];
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                board[i][j] = buttons[i][j].getText();
-            }
-        }
-        return board;
+    private void undoLastMove() {
+        game.clear(moveStack.pop());
+        currentPlayer = String.valueOf(game.toMove());
     }
 
-    private void highlightWinningCells() {
-        String[][] board = getBoardState();
+    private void redoNextMove() {
+        int cell = moveStack.redo();
+        game.place(cell, MoveStack.playerAt(moveStack.size() - 1));
+        currentPlayer = String.valueOf(game.toMove());
+    }
 
-        for (int i = 0; i < 3; i++) {
-            if (checkLine(board[i][0], board[i][1], board[i][2])) {
-                highlightCells(new int[][]{{i, 0}, {i, 1}, {i, 2}});
-                return;
+    // Redraws every cell from the game state
+    private void refreshBoard() {
+        for (int row = 0; row < boardSize; row++) {
+            for (int col = 0; col < boardSize; col++) {
+                char symbol = game.get(row, col);
+                JButton button = buttons[row][col];
+                button.setText(symbol == ' ' ? "" : String.valueOf(symbol));
+                button.setForeground(symbol == 'X' ? new Color(200, 0, 0) : new Color(0, 0, 200));
+                button.setBackground(Color.WHITE);
             }
         }
-
-        for (int i = 0; i < 3; i++) {
-            if (checkLine(board[0][i], board[1][i], board[2][i])) {
-                highlightCells(new int[][]{{0, i}, {1, i}, {2, i}});
-                return;
-            }
+        if (game.hasWinner()) {
+            highlightWinningCells();
         }
+    }
 
-        if (checkLine(board[0][0], board[1][1], board[2][2])) {
-            highlightCells(new int[][]{{0, 0}, {1, 1}, {2, 2}});
-            return;
-        }
+    private boolean checkWin() {
+        return game.hasWinner();
+    }
 
-        if (checkLine(board[0][2], board[1][1], board[2][0])) {
-            highlightCells(new int[][]{{0, 2}, {1, 1}, {2, 0}});
+    private boolean checkDraw() {
+        return game.isFull();
+    }
+
+    private boolean checkGameOver() {
+        return game.isGameOver();
+    }
+
+    private void highlightWinningCells() {
+        int[] line = game.winningCells();
+        int[][] cells = new int[line.length][];
+        for (int i = 0; i < line.length; i++) {
+            cells[i] = toRowCol(line[i]);
         }
+        highlightCells(cells);
     }
 
     private void highlightCells(int[][] cells) {
@@ -1109,19 +1016,23 @@ public class TicTacToe {
     }
 
     private void resetGame() {
+        cancelComputerMove();
         for (JButton[] row : buttons) {
             for (JButton button : row) {
                 button.setText("");
                 button.setBackground(Color.WHITE);
             }
         }
+        game.reset();
+        moveStack.clear();
         currentPlayer = "X";
         isOnlineMode = false;
+        closeGameChannel();
         updateStatusLabel();
     }
 
     private void showStatistics() {
-        if (connection == null) {
+        if (database == null) {
             JOptionPane.showMessageDialog(frame,
                     "Database not connected. Statistics unavailable.",
                     "Database Error",
@@ -1129,121 +1040,117 @@ public class TicTacToe {
             return;
         }
 
-        try {
-            StringBuilder stats = new StringBuilder();
-            stats.append("Statistics for: ").append(playerName).append("\n\n");
-
-            // Get player stats
-            String playerStatsSQL = "SELECT * FROM player_stats WHERE player_name = ?";
-            try (PreparedStatement pstmt = connection.prepareStatement(playerStatsSQL)) {
-                pstmt.setString(1, playerName);
-                ResultSet rs = pstmt.executeQuery();
-
-                if (rs.next()) {
-                    stats.append("Overall Statistics:\n");
-                    stats.append("Total Games: ").append(rs.getInt("total_games")).append("\n");
-                    stats.append("Wins: ").append(rs.getInt("wins")).append("\n");
-                    stats.append("Losses: ").append(rs.getInt("losses")).append("\n");
-                    stats.append("Draws: ").append(rs.getInt("draws")).append("\n");
-
-                    stats.append("\nOnline Statistics:\n");
-                    stats.append("Online Wins: ").append(rs.getInt("online_wins")).append("\n");
-                    stats.append("Online Losses: ").append(rs.getInt("online_losses")).append("\n");
-
-                    int totalGames = rs.getInt("total_games");
-                    if (totalGames > 0) {
-                        double winRate = (rs.getInt("wins") * 100.0) / totalGames;
-                        stats.append(String.format("Overall Win Rate: %.1f%%\n", winRate));
-                    }
-
-                    Date lastPlayed = rs.getDate("last_played");
-                    if (lastPlayed != null) {
-                        stats.append("Last Played: ").append(lastPlayed.toString()).append("\n");
-                    }
-                }
+        // Shown straight away and filled in once the statistics are loaded
+        String name = playerName;
+        JTextArea text = new JTextArea("Loading statistics for " + name + "...", 20, 40);
+        text.setEditable(false);
+        text.setOpaque(false);
+        JOptionPane pane = new JOptionPane(text, JOptionPane.INFORMATION_MESSAGE);
+        JDialog dialog = pane.createDialog(frame, "Game Statistics");
+        dialog.setModal(false);
+
+        database.playerStats(name).whenComplete((stats, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                dialog.dispose();
+                JOptionPane.showMessageDialog(frame,
+                        "Error retrieving statistics: " + GameChannelClient.errorMessage(error),
+                        "Database Error",
+                        JOptionPane.ERROR_MESSAGE);
+                return;
             }
+            text.setText(formatStatistics(stats));
+            text.setCaretPosition(0);
+        }));
+        dialog.setVisible(true);
+    }
 
-            // Get recent games
-            stats.append("\nRecent Games:\n");
-            String recentGamesSQL = "SELECT * FROM game_stats WHERE player_name = ? ORDER BY play_date DESC LIMIT 10";
-            try (PreparedStatement pstmt = connection.prepareStatement(recentGamesSQL)) {
-                pstmt.setString(1, playerName);
-                ResultSet rs = pstmt.executeQuery();
-
-                int count = 1;
-                while (rs.next()) {
-                    stats.append(count).append(". ")
-                            .append(rs.getString("game_mode")).append(" - ")
-                            .append(rs.getString("difficulty")).append(" - ")
-                            .append(rs.getString("result")).append(" vs ")
-                            .append(rs.getString("opponent_name")).append(" - ")
-                            .append(rs.getTimestamp("play_date").toString().substring(0, 16))
-                            .append("\n");
-                    count++;
-                }
+    private static String formatStatistics(PlayerStatsCache.PlayerStats player) {
+        StringBuilder stats = new StringBuilder();
+        stats.append("Statistics for: ").append(player.playerName).append("\n\n");
+
+        if (player.recorded) {
+            stats.append("Overall Statistics:\n");
+            stats.append("Total Games: ").append(player.totalGames).append("\n");
+            stats.append("Wins: ").append(player.wins).append("\n");
+            stats.append("Losses: ").append(player.losses).append("\n");
+            stats.append("Draws: ").append(player.draws).append("\n");
+
+            stats.append("\nOnline Statistics:\n");
+            stats.append("Online Wins: ").append(player.onlineWins).append("\n");
+            stats.append("Online Losses: ").append(player.onlineLosses).append("\n");
+
+            if (player.totalGames > 0) {
+                double winRate = (player.wins * 100.0) / player.totalGames;
+                stats.append(String.format("Overall Win Rate: %.1f%%\n", winRate));
             }
 
-            JOptionPane.showMessageDialog(frame,
-                    stats.toString(),
-                    "Game Statistics",
-                    JOptionPane.INFORMATION_MESSAGE);
+            if (player.lastPlayed != null) {
+                stats.append("Last Played: ").append(player.lastPlayed.toString()).append("\n");
+            }
+        }
 
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(frame,
-                    "Error retrieving statistics: " + e.getMessage(),
-                    "Database Error",
-                    JOptionPane.ERROR_MESSAGE);
+        stats.append("\nRecent Games:\n");
+        int count = 1;
+        for (PlayerStatsCache.RecentGame game : player.recentGames) {
+            stats.append(count).append(". ")
+                    .append(game.gameMode).append(" - ")
+                    .append(game.difficulty).append(" - ")
+                    .append(game.result).append(" vs ")
+                    .append(game.opponentName).append(" - ")
+                    .append(game.playDate.toString().substring(0, 16))
+                    .append("\n");
+            count++;
         }
+        return stats.toString();
     }
 
     private void showDatabaseInfo() {
         StringBuilder info = new StringBuilder();
         info.append("Database Information\n\n");
 
-        if (connection == null) {
+        if (database == null) {
             info.append("Status: NOT CONNECTED\n");
             info.append("Please check your database configuration.\n\n");
             info.append("Required setup:\n");
             info.append("1. Install MySQL database\n");
             info.append("2. Create database: tictactoe_db\n");
-            info.append("3. Update connection details in code:\n");
-            info.append("   - URL: jdbc:mysql://localhost:3306/tictactoe_db\n");
-            info.append("   - Username: your_username\n");
-            info.append("   - Password: your_password\n");
-            info.append("4. Add MySQL JDBC driver to classpath\n");
+            info.append("3. Set connection details if they differ from the defaults:\n");
+            info.append("   - URL: -Dtictactoe.db.url=jdbc:mysql://localhost:3306/tictactoe_db\n");
+            info.append("   - Username: -Dtictactoe.db.user=your_username\n");
+            info.append("   - Password: -Dtictactoe.db.password=your_password\n");
+            info.append("4. Add MySQL JDBC driver to classpath\n\n");
+            info.append("Or keep statistics in a local file, with no server:\n");
+            info.append("   -Dtictactoe.db.backend=h2 (h2.jar) or sqlite (sqlite-jdbc.jar)\n");
         } else {
             info.append("Status: CONNECTED\n");
+            info.append("Backend: ").append(database.backend().displayName()).append("\n");
+            info.append("URL: ").append(database.url()).append("\n");
             info.append("Player: ").append(playerName).append("\n\n");
 
-            try {
-                // Get database stats
-                String countSQL = "SELECT COUNT(*) as total FROM game_stats";
-                try (Statement stmt = connection.createStatement()) {
-                    ResultSet rs = stmt.executeQuery(countSQL);
-                    if (rs.next()) {
-                        info.append("Total games recorded: ").append(rs.getInt("total")).append("\n");
-                    }
-                }
-
-                countSQL = "SELECT COUNT(DISTINCT player_name) as players FROM player_stats";
-                try (Statement stmt = connection.createStatement()) {
-                    ResultSet rs = stmt.executeQuery(countSQL);
+            try (Connection conn = database.getConnection()) {
+                // Get database stats; the writer keeps the totals up to date, so this
+                // reads one row however many games there are
+                String summarySQL = "SELECT total_games, total_players FROM stats_summary WHERE id = 1";
+                try (Statement stmt = conn.createStatement()) {
+                    ResultSet rs = stmt.executeQuery(summarySQL);
                     if (rs.next()) {
-                        info.append("Total players: ").append(rs.getInt("players")).append("\n");
+                        info.append("Total games recorded: ").append(rs.getLong("total_games")).append("\n");
+                        info.append("Total players: ").append(rs.getLong("total_players")).append("\n");
                     }
                 }
 
-                countSQL = "SELECT COUNT(*) as active FROM online_games WHERE status = 'waiting'";
-                try (Statement stmt = connection.createStatement()) {
-                    ResultSet rs = stmt.executeQuery(countSQL);
-                    if (rs.next()) {
-                        info.append("Waiting online games: ").append(rs.getInt("active")).append("\n");
-                    }
-                }
+                // Online games live in the server's session store until they finish
+                GameSessionStore sessions = GameSessionStore.shared();
+                info.append("Online games hosted here: ").append(sessions.count(GameSession.WAITING))
+                        .append(" waiting, ").append(sessions.count(GameSession.ACTIVE)).append(" active, ")
+                        .append(sessions.expiredCount()).append(" expired for inactivity\n");
+                info.append("Players queued for a quick match: ").append(Matchmaker.shared().waiting()).append("\n");
 
             } catch (SQLException e) {
                 info.append("Error getting database info: ").append(e.getMessage());
             }
+
+            info.append("\n").append(database.metrics()).append("\n");
         }
 
         JOptionPane.showMessageDialog(frame,
@@ -1273,19 +1180,31 @@ public class TicTacToe {
         }).start();
     }
 
-    private String generateGameId() {
-        Random rand = new Random();
-        return String.format("%04d", rand.nextInt(10000));
-    }
-
     public static void main(String[] args) {
+        // Load (or build on first boot) the perfect-play table before the first Hard move
+        SolvedTable.get();
         SwingUtilities.invokeLater(() -> new TicTacToe());
     }
 }
 
-// Simple HTTP Server for web interface
+// Simple HTTP Server for web interface. Requests run on a virtual thread each
+// (Java 21+) or on a bounded pool, never on the dispatcher thread, so one slow
+// handler can't stall the others. Event streams don't hold a thread while idle.
+// Settings: -Dtictactoe.http.executor=virtual|pool, tictactoe.http.threads,
+// tictactoe.http.queue, tictactoe.http.backlog, tictactoe.http.drainSeconds,
+// tictactoe.http.requestTimeoutSeconds and tictactoe.http.keepAliveSeconds.
 class SimpleHttpServer {
+    static final String EXECUTOR_MODE = System.getProperty("tictactoe.http.executor", "virtual");
+    static final int THREADS = Integer.getInteger("tictactoe.http.threads", 200);
+    static final int QUEUE = Integer.getInteger("tictactoe.http.queue", 10_000);
+    static final int BACKLOG = Integer.getInteger("tictactoe.http.backlog", 1024);
+    static final int DRAIN_SECONDS = Integer.getInteger("tictactoe.http.drainSeconds", 5);
+    static final int REQUEST_TIMEOUT_SECONDS = Integer.getInteger("tictactoe.http.requestTimeoutSeconds", 30);
+    static final int KEEP_ALIVE_SECONDS = Integer.getInteger("tictactoe.http.keepAliveSeconds", 60);
+
     private com.sun.net.httpserver.HttpServer server;
+    private java.util.concurrent.ExecutorService executor;
+    private Thread shutdownHook;
     private int port;
 
     public SimpleHttpServer(int port) {
@@ -1293,29 +1212,90 @@ class SimpleHttpServer {
     }
 
     public void start() throws Exception {
-        server = com.sun.net.httpserver.HttpServer.create(new java.net.InetSocketAddress(port), 0);
+        // Read by the JDK server when its first instance is created. Only the request
+        // has a deadline: a response time limit would also cut off event streams.
+        if (System.getProperty("sun.net.httpserver.maxReqTime") == null) {
+            System.setProperty("sun.net.httpserver.maxReqTime", String.valueOf(REQUEST_TIMEOUT_SECONDS));
+        }
+        // How long an idle keep-alive connection is held for the client's next request
+        if (System.getProperty("sun.net.httpserver.idleInterval") == null) {
+            System.setProperty("sun.net.httpserver.idleInterval", String.valueOf(KEEP_ALIVE_SECONDS));
+        }
+
+        server = com.sun.net.httpserver.HttpServer.create(new java.net.InetSocketAddress(port), BACKLOG);
 
         // Serve static files
         server.createContext("/tictactoe", new WebHandler());
         server.createContext("/api", new ApiHandler());
 
-        server.setExecutor(null);
+        executor = createExecutor();
+        server.setExecutor(executor);
         server.start();
+        shutdownHook = new Thread(this::stop, "http-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
         System.out.println("Server started on port " + port);
     }
 
+    private static java.util.concurrent.ExecutorService createExecutor() {
+        if (EXECUTOR_MODE.equals("virtual")) {
+            try {
+                // Looked up reflectively so the code still builds and runs on Java 17
+                return (java.util.concurrent.ExecutorService) java.util.concurrent.Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("Virtual threads need Java 21; using a pool of " + THREADS + " threads");
+            }
+        } else if (!EXECUTOR_MODE.equals("pool")) {
+            throw new IllegalArgumentException("Unknown executor mode: " + EXECUTOR_MODE);
+        }
+
+        // Bounded pool: when the queue is full new requests are refused rather than queued forever
+        java.util.concurrent.atomic.AtomicInteger count = new java.util.concurrent.atomic.AtomicInteger();
+        java.util.concurrent.ThreadPoolExecutor pool = new java.util.concurrent.ThreadPoolExecutor(
+                THREADS, THREADS, 60, java.util.concurrent.TimeUnit.SECONDS,
+                new java.util.concurrent.ArrayBlockingQueue<>(QUEUE),
+                r -> {
+                    Thread thread = new Thread(r, "http-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    // Stops accepting connections, ends the event streams, then gives requests in
+    // flight up to DRAIN_SECONDS to finish
     public void stop() {
-        if (server != null) {
-            server.stop(0);
+        if (server == null) return;
+
+        GameChannel.closeAll();
+        server.stop(DRAIN_SECONDS);
+        server = null;
+
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(DRAIN_SECONDS, java.util.concurrent.TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // Already shutting down
+            }
         }
     }
 }
 
 // Web interface handler
 class WebHandler implements com.sun.net.httpserver.HttpHandler {
-    @Override
-    public void handle(com.sun.net.httpserver.HttpExchange exchange) throws java.io.IOException {
-        String response = """
+    // Encoded and compressed once, when the class loads
+    private static final StaticAsset PAGE = new StaticAsset("text/html; charset=utf-8", """
             <!DOCTYPE html>
             <html>
             <head>
@@ -1325,6 +1305,8 @@ class WebHandler implements com.sun.net.httpserver.HttpHandler {
                     .board { display: grid; grid-template-columns: repeat(3, 100px); gap: 5px; margin: 20px 0; }
                     .cell { width: 100px; height: 100px; font-size: 40px; text-align: center; 
                             line-height: 100px; border: 2px solid #333; cursor: pointer; }
+                    .board.large { gap: 1px; }
+                    .board.large .cell { width: 32px; height: 32px; font-size: 20px; line-height: 32px; border-width: 1px; }
                     .status { font-size: 20px; margin: 20px 0; }
                     button { padding: 10px 20px; font-size: 16px; margin: 5px; }
                 </style>
@@ -1333,18 +1315,28 @@ class WebHandler implements com.sun.net.httpserver.HttpHandler {
                 <h1>Tic Tac Toe Web Interface</h1>
                 <div id="status" class="status">Loading...</div>
                 <div class="board" id="board"></div>
+                <select id="size">
+                    <option value="3">3x3</option>
+                    <option value="4">4x4</option>
+                    <option value="5">5x5</option>
+                    <option value="15">15x15 (5 in a row)</option>
+                </select>
                 <button onclick="newGame()">New Game</button>
                 <button onclick="joinGame()">Join Game</button>
+                <button onclick="quickMatch()">Quick Match</button>
                 <div id="gameId"></div>
                 
                 <script>
                     let currentPlayer = 'X';
                     let gameId = null;
+                    let size = 3;
                     
                     function createBoard() {
                         const board = document.getElementById('board');
                         board.innerHTML = '';
-                        for (let i = 0; i < 9; i++) {
+                        board.className = size > 5 ? 'board large' : 'board';
+                        board.style.gridTemplateColumns = 'repeat(' + size + ', ' + (size > 5 ? '32px' : '100px') + ')';
+                        for (let i = 0; i < size * size; i++) {
                             const cell = document.createElement('div');
                             cell.className = 'cell';
                             cell.dataset.index = i;
@@ -1353,98 +1345,370 @@ class WebHandler implements com.sun.net.httpserver.HttpHandler {
                         }
                     }
                     
+                    let token = null;
+                    let events = null;
+                    
                     async function makeMove(index) {
+                        if (!gameId) return;
                         const response = await fetch('/api/move', {
                             method: 'POST',
                             headers: {'Content-Type': 'application/json'},
-                            body: JSON.stringify({gameId, index, player: currentPlayer})
+                            body: JSON.stringify({gameId, index, token})
                         });
-                        updateBoard();
+                        if (!response.ok) {
+                            const data = await response.json();
+                            document.getElementById('status').textContent = data.error;
+                        }
+                        // The new board arrives on the event stream
                     }
                     
                     async function newGame() {
-                        const response = await fetch('/api/newgame');
+                        const requested = document.getElementById('size').value;
+                        const response = await fetch('/api/newgame?size=' + requested);
                         const data = await response.json();
                         gameId = data.gameId;
-                        document.getElementById('gameId').textContent = 'Game ID: ' + gameId;
+                        token = data.token;
+                        size = data.size;
+                        document.getElementById('gameId').textContent = 'Join code: ' + data.joinCode;
                         currentPlayer = 'X';
                         createBoard();
+                        subscribe();
                     }
                     
                     async function joinGame() {
-                        const inputId = prompt('Enter Game ID:');
+                        const inputId = prompt('Enter join code:');
                         if (inputId) {
-                            gameId = inputId;
-                            const response = await fetch('/api/joingame/' + gameId);
-                            updateBoard();
+                            const response = await fetch('/api/joingame/' + encodeURIComponent(inputId));
+                            const data = await response.json();
+                            if (!response.ok) {
+                                document.getElementById('status').textContent = data.error;
+                                return;
+                            }
+                            gameId = data.gameId;
+                            token = data.token;
+                            document.getElementById('gameId').textContent = 'Join code: ' + data.joinCode;
+                            subscribe();
                         }
                     }
                     
-                    async function updateBoard() {
-                        if (!gameId) return;
-                        const response = await fetch('/api/board/' + gameId);
-                        const data = await response.json();
-                        const board = document.getElementById('board');
-                        
-                        data.board.forEach((cell, index) => {
-                            if (cell !== ' ') {
-                                board.children[index].textContent = cell;
+                    // Waits on the ticket's stream until the server pairs us with someone
+                    async function quickMatch() {
+                        const requested = document.getElementById('size').value;
+                        const response = await fetch('/api/matchmaking/join?size=' + requested);
+                        const ticket = await response.json();
+                        if (!response.ok) {
+                            document.getElementById('status').textContent = ticket.error;
+                            return;
+                        }
+                        if (events) events.close();
+                        gameId = null;
+                        document.getElementById('gameId').textContent = '';
+                        document.getElementById('status').textContent = 'Looking for an opponent...';
+                        events = new EventSource('/api/events/' + ticket.ticketId);
+                        events.addEventListener('state', e => {
+                            const data = JSON.parse(e.data);
+                            if (data.status === 'matched') {
+                                gameId = data.gameId;
+                                token = data.token;
+                                size = data.size;
+                                createBoard();
+                                subscribe();
+                            } else if (data.status !== 'waiting') {
+                                events.close();
+                                document.getElementById('status').textContent = 'No opponent found';
                             }
                         });
+                    }
+                    
+                    // The server pushes the whole state after every change
+                    function subscribe() {
+                        if (events) events.close();
+                        events = new EventSource('/api/events/' + gameId);
+                        events.addEventListener('state', e => showState(JSON.parse(e.data)));
+                        events.addEventListener('end', () => events.close());
+                    }
+                    
+                    function showState(data) {
+                        const board = document.getElementById('board');
+                        if (data.size !== size || board.children.length !== size * size) {
+                            size = data.size;
+                            createBoard();
+                        }
+                        
+                        for (let index = 0; index < data.board.length; index++) {
+                            const cell = data.board[index];
+                            board.children[index].textContent = cell === '-' ? '' : cell;
+                        }
                         
-                        document.getElementById('status').textContent = 
-                            'Current Player: ' + data.currentPlayer;
+                        currentPlayer = data.currentPlayer;
+                        let text = 'Current Player: ' + data.currentPlayer;
+                        if (data.status === 'waiting') text = 'Waiting for an opponent...';
+                        if (data.status === 'completed') text = data.winner + ' wins!';
+                        if (data.status === 'draw') text = "It's a draw!";
+                        if (data.status === 'expired') text = 'Game closed after a long time without moves';
+                        document.getElementById('status').textContent = text;
                     }
                     
-                    // Poll for updates every 2 seconds
-                    setInterval(updateBoard, 2000);
                     createBoard();
                 </script>
             </body>
             </html>
-            """;
+            """);
 
-        exchange.getResponseHeaders().set("Content-Type", "text/html");
-        exchange.sendResponseHeaders(200, response.length());
-        try (java.io.OutputStream os = exchange.getResponseBody()) {
-            os.write(response.getBytes());
+    @Override
+    public void handle(com.sun.net.httpserver.HttpExchange exchange) throws java.io.IOException {
+        String method = exchange.getRequestMethod();
+        if (!method.equals("GET") && !method.equals("HEAD")) {
+            exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
         }
+        PAGE.serve(exchange);
     }
 }
 
-// API handler for game operations
+// API handler for game operations. Games live in the GameSessionStore; every change
+// is also pushed to the game's event stream. Responses stream straight into the
+// exchange through JsonWriter and move bodies are pulled apart with JsonReader.
 class ApiHandler implements com.sun.net.httpserver.HttpHandler {
+    private static final String[] MOVE_FIELDS = {"gameId", "index", "token"};
+    static final int AI_MAX_AGE_SECONDS = Integer.getInteger("tictactoe.ai.maxAgeSeconds", 3600);
+
+    private final GameSessionStore sessions = GameSessionStore.shared();
+
     @Override
     public void handle(com.sun.net.httpserver.HttpExchange exchange) throws java.io.IOException {
         String path = exchange.getRequestURI().getPath();
         String method = exchange.getRequestMethod();
 
-        String response = "{}";
-
         try {
-            if (path.equals("/api/newgame") && method.equals("GET")) {
-                // Create new game
-                response = "{\"gameId\":\"1234\",\"status\":\"created\"}";
+            if (path.startsWith("/api/events/") && method.equals("GET")) {
+                // Event stream; the channel keeps the exchange open
+                String id = path.substring("/api/events/".length());
+                GameChannel channel = GameChannel.find(id);
+                GameSession watched = sessions.get(id);
+                if (watched != null) {
+                    watched.touch(); // Someone is still following the game
+                }
+                if (channel != null) {
+                    channel.subscribe(exchange);
+                } else {
+                    JsonWriter.error(exchange, 404, "Unknown game");
+                }
+            } else if (path.equals("/api/newgame") && method.equals("GET")) {
+                // Create new game; board size and K-in-a-row come from ?size=&k=
+                String sizeParam = queryParam(exchange, "size");
+                String kParam = queryParam(exchange, "k");
+                int size = sizeParam == null ? 3 : Integer.parseInt(sizeParam);
+                int k = kParam == null ? BoardGeometry.defaultWinLength(size) : Integer.parseInt(kParam);
+
+                GameSession session = sessions.create(queryParam(exchange, "player"), size, k);
+                try (JsonWriter out = JsonWriter.forResponse(exchange, 200)) {
+                    out.beginObject()
+                            .name("gameId").value(session.gameId)
+                            .name("joinCode").value(session.joinCode)
+                            .name("status").value("created")
+                            .name("size").value(size)
+                            .name("k").value(k)
+                            .name("player").value("X")
+                            .name("token").value(session.creatorToken())
+                            .endObject();
+                }
             } else if (path.startsWith("/api/joingame/") && method.equals("GET")) {
-                // Join existing game
-                String gameId = path.substring("/api/joingame/".length());
-                response = "{\"gameId\":\"" + gameId + "\",\"status\":\"joined\"}";
+                // Join existing game as O
+                GameSession session = sessions.get(path.substring("/api/joingame/".length()));
+                if (session == null) {
+                    JsonWriter.error(exchange, 404, "Unknown game");
+                    return;
+                }
+                String token = sessions.join(session, queryParam(exchange, "player"));
+                try (JsonWriter out = JsonWriter.forResponse(exchange, 200)) {
+                    out.beginObject().name("player").value("O").name("token").value(token);
+                    session.writeStateFields(out);
+                    out.endObject();
+                }
             } else if (path.startsWith("/api/board/") && method.equals("GET")) {
                 // Get board state
-                String gameId = path.substring("/api/board/".length());
-                response = "{\"board\":[\" \",\" \",\" \",\" \",\" \",\" \",\" \",\" \",\" \"],\"currentPlayer\":\"X\"}";
+                GameSession session = sessions.get(path.substring("/api/board/".length()));
+                if (session == null) {
+                    JsonWriter.error(exchange, 404, "Unknown game");
+                    return;
+                }
+                session.touch();
+                try (JsonWriter out = JsonWriter.forResponse(exchange, 200)) {
+                    out.beginObject();
+                    session.writeStateFields(out);
+                    out.endObject();
+                }
+            } else if (path.equals("/api/ai/move") && (method.equals("GET") || method.equals("HEAD"))) {
+                // What the AI would play: ?board=X---O----&player=X&level=3&k=3
+                String levelParam = queryParam(exchange, "level");
+                String kParam = queryParam(exchange, "k");
+                int level = levelParam == null ? AiPlayer.HARD : Integer.parseInt(levelParam);
+                int k = kParam == null ? 0 : Integer.parseInt(kParam);
+                String board = queryParam(exchange, "board");
+                String player = queryParam(exchange, "player");
+                AiPlayer.checkLevel(level);
+                // A client revalidating an answer it holds gets a 304 before any search
+                String etag = level == AiPlayer.EASY ? null : aiMoveTag(board, player, level, k);
+                if (etag != null && StaticAsset.matches(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+                    setAiCacheHeaders(exchange.getResponseHeaders(), etag);
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                sendAiMove(exchange, AiMoveService.shared().bestMove(board, player, level, k), etag);
+            } else if (path.equals("/api/ai/stats") && method.equals("GET")) {
+                AiMoveService ai = AiMoveService.shared();
+                try (JsonWriter out = JsonWriter.forResponse(exchange, 200)) {
+                    out.beginObject()
+                            .name("size").value(ai.size())
+                            .name("capacity").value(AiMoveService.CACHE_SIZE)
+                            .name("hits").value(ai.hits())
+                            .name("misses").value(ai.misses())
+                            .name("hitRate").value(ai.hitRate())
+                            .name("evictions").value(ai.evictions())
+                            .name("averageSearchMillis").value(ai.averageSearchMillis())
+                            .endObject();
+                }
+            } else if (path.equals("/api/matchmaking/join") && method.equals("GET")) {
+                // Queue for a quick match: ?player=&rating=&size=&k=; the ticket's
+                // state, and the match when it is made, stream from /api/events/{ticketId}
+                String sizeParam = queryParam(exchange, "size");
+                String kParam = queryParam(exchange, "k");
+                String ratingParam = queryParam(exchange, "rating");
+                int size = sizeParam == null ? 3 : Integer.parseInt(sizeParam);
+                int k = kParam == null ? BoardGeometry.defaultWinLength(size) : Integer.parseInt(kParam);
+                int rating = ratingParam == null ? Matchmaker.DEFAULT_RATING : Integer.parseInt(ratingParam);
+                sendTicket(exchange, Matchmaker.shared().enqueue(queryParam(exchange, "player"), rating, size, k));
+            } else if (path.equals("/api/matchmaking/stats") && method.equals("GET")) {
+                Matchmaker matchmaker = Matchmaker.shared();
+                try (JsonWriter out = JsonWriter.forResponse(exchange, 200)) {
+                    out.beginObject()
+                            .name("waiting").value(matchmaker.waiting())
+                            .name("matches").value(matchmaker.matches())
+                            .name("averageWaitMillis").value(matchmaker.averageWaitMillis())
+                            .name("ticks").value(matchmaker.ticks())
+                            .endObject();
+                }
+            } else if (path.startsWith("/api/matchmaking/") && method.equals("GET")) {
+                // A ticket's state: /api/matchmaking/{ticketId}, or .../cancel/{ticketId} to leave the queue
+                String rest = path.substring("/api/matchmaking/".length());
+                boolean cancel = rest.startsWith("cancel/");
+                Matchmaker.Ticket ticket = Matchmaker.shared().get(cancel ? rest.substring("cancel/".length()) : rest);
+                if (ticket == null) {
+                    JsonWriter.error(exchange, 404, "Unknown ticket");
+                    return;
+                }
+                if (cancel) {
+                    Matchmaker.shared().cancel(ticket);
+                }
+                sendTicket(exchange, ticket);
+            } else if (path.equals("/api/batch") && method.equals("POST")) {
+                // Many moves and best-move queries, answered in order
+                ApiBatch.handle(exchange, sessions);
             } else if (path.equals("/api/move") && method.equals("POST")) {
-                // Make a move
-                response = "{\"status\":\"move_made\"}";
+                // Make a move: {"gameId": "...", "index": 4, "token": "..."}
+                JsonReader in = JsonReader.of(exchange.getRequestBody(), JsonReader.MAX_BODY_BYTES);
+                String gameId = null;
+                String token = null;
+                int index = -1;
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.selectName(MOVE_FIELDS)) {
+                        case 0: gameId = in.nextString(); break;
+                        case 1: index = in.nextInt(); break;
+                        case 2: token = in.nextString(); break;
+                        default: in.skipValue();
+                    }
+                }
+                in.endObject();
+                in.endDocument();
+
+                GameSession session = gameId == null ? null : sessions.get(gameId);
+                if (session == null) {
+                    JsonWriter.error(exchange, 404, "Unknown game");
+                    return;
+                }
+                String state = sessions.move(session, token, index);
+                try (JsonWriter out = JsonWriter.forResponse(exchange, 200)) {
+                    out.rawValue(state);
+                }
+            } else {
+                try (JsonWriter out = JsonWriter.forResponse(exchange, 200)) {
+                    out.beginObject().endObject();
+                }
             }
+        } catch (IllegalArgumentException e) {
+            JsonWriter.error(exchange, 400, e.getMessage());
+        } catch (IllegalStateException e) {
+            JsonWriter.error(exchange, 409, e.getMessage());
         } catch (Exception e) {
-            response = "{\"error\":\"" + e.getMessage() + "\"}";
+            JsonWriter.error(exchange, 500, e.getMessage());
+        }
+    }
+
+    // Tag of /api/ai/move's answer for these parameters, without the W/ prefix
+    private static String aiMoveTag(String board, String player, int level, int k) {
+        return "\"a" + Integer.toHexString((board + '/' + player + '/' + level + '/' + k).hashCode()) + "\"";
+    }
+
+    private static void setAiCacheHeaders(com.sun.net.httpserver.Headers headers, String etag) {
+        headers.set("Cache-Control", "public, max-age=" + AI_MAX_AGE_SECONDS);
+        headers.set("ETag", "W/" + etag);
+    }
+
+    private static void sendTicket(com.sun.net.httpserver.HttpExchange exchange, Matchmaker.Ticket ticket)
+            throws java.io.IOException {
+        try (JsonWriter out = JsonWriter.forResponse(exchange, 200)) {
+            out.beginObject();
+            ticket.writeFields(out);
+            out.endObject();
+        }
+    }
+
+    // Hard and Expert answers on bigger boards are time-bounded searches, so asking
+    // again can give a different move, but any of them answers the question. The
+    // ETag is a weak one naming the question, not the move, so revalidating never
+    // needs a search. Easy answers are random and must not be reused.
+    private static void sendAiMove(com.sun.net.httpserver.HttpExchange exchange, AiMoveService.Answer answer,
+                                   String etag) throws java.io.IOException {
+        com.sun.net.httpserver.Headers headers = exchange.getResponseHeaders();
+        headers.set("X-Cache", answer.cached ? "HIT" : "MISS");
+        if (etag == null) {
+            headers.set("Cache-Control", "no-store");
+        } else {
+            setAiCacheHeaders(headers, etag);
+        }
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        int size = answer.board.size();
+        try (JsonWriter out = JsonWriter.forResponse(exchange, 200)) {
+            out.beginObject()
+                    .name("move").value(answer.move)
+                    .name("row").value(answer.move < 0 ? -1 : answer.move / size)
+                    .name("col").value(answer.move < 0 ? -1 : answer.move % size)
+                    .name("player").value(answer.player)
+                    .name("level").value(answer.level)
+                    .endObject();
         }
+    }
 
-        exchange.getResponseHeaders().set("Content-Type", "application/json");
-        exchange.sendResponseHeaders(200, response.length());
-        try (java.io.OutputStream os = exchange.getResponseBody()) {
-            os.write(response.getBytes());
+    private static String queryParam(com.sun.net.httpserver.HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return null;
+
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            if (key.equals(name)) {
+                return eq < 0 ? "" : java.net.URLDecoder.decode(pair.substring(eq + 1), java.nio.charset.StandardCharsets.UTF_8);
+            }
         }
+        return null;
     }
 }
@@ -0,0 +1,58 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Lock-free transposition table for the N x N searches. Each slot holds two longs:
+// (hash ^ data) and data. A reader only trusts an entry when the pair XORs back to
+// its own hash, so racing writers can at worst lose an entry, never corrupt one.
+final class TranspositionTable {
+    static final TranspositionTable SHARED = new TranspositionTable(Integer.getInteger("tictactoe.ai.ttBits", 20));
+
+    static final int EXACT = 1;
+    static final int LOWER_BOUND = 2;
+    static final int UPPER_BOUND = 3;
+
+    private final AtomicLongArray slots;
+    private final int mask;
+
+    TranspositionTable(int bits) {
+        this.slots = new AtomicLongArray(2 << bits);
+        this.mask = (1 << bits) - 1;
+    }
+
+    // Packed entry for `hash`, or 0 if the slot holds something else
+    long probe(long hash) {
+        int slot = (int) hash & mask;
+        long check = slots.get(2 * slot);
+        long data = slots.get(2 * slot + 1);
+        return (check ^ data) == hash ? data : 0;
+    }
+
+    void store(long hash, int move, int depth, int flag, int score) {
+        int slot = (int) hash & mask;
+        long data = ((long) score << 32) | ((long) (move & 0x3FF) << 12) | ((depth & 0xFF) << 2) | flag;
+        slots.set(2 * slot + 1, data);
+        slots.set(2 * slot, hash ^ data);
+    }
+
+    void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, 0L);
+        }
+    }
+
+    static int score(long data) {
+        return (int) (data >> 32);
+    }
+
+    static int move(long data) {
+        int move = (int) (data >>> 12) & 0x3FF;
+        return move == 0x3FF ? -1 : move;
+    }
+
+    static int depth(long data) {
+        return (int) (data >>> 2) & 0xFF;
+    }
+
+    static int flag(long data) {
+        return (int) data & 0x3;
+    }
+}